@@ -0,0 +1,139 @@
+package de.labystudio.pluginloader.benchmark;
+
+import de.labystudio.pluginloader.Core;
+import de.labystudio.pluginloader.PluginLoader;
+import de.labystudio.pluginloader.plugin.Plugin;
+import de.labystudio.pluginloader.plugin.PluginClassLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures class loading through the plugin class loader of a dependent plugin
+ *
+ * @author LabyStudio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ClassLoadingBenchmark {
+
+    @Param({"20"})
+    public int plugins;
+
+    @Param({"50", "500"})
+    public int classesPerPlugin;
+
+    private final Core core = new Core() {
+    };
+
+    private File directory;
+    private PluginLoader pluginLoader;
+    private PluginClassLoader baseClassLoader;
+    private PluginClassLoader dependentClassLoader;
+    private Plugin dependentPlugin;
+    private String[] baseClassNames;
+    private String[] dependentClassNames;
+
+    @Setup
+    public void loadPlugins() throws Exception {
+        this.directory = PluginFixture.createPluginDirectory(this.plugins, PluginFixture.Shape.FAN_OUT, this.classesPerPlugin);
+        this.pluginLoader = new PluginLoader(this.core, this.directory, getClass().getClassLoader(), message -> {
+        });
+        this.pluginLoader.loadPluginsInDirectory();
+
+        this.baseClassLoader = (PluginClassLoader) this.pluginLoader.getPlugin(PluginFixture.pluginName(0)).getClass().getClassLoader();
+        this.dependentPlugin = this.pluginLoader.getPlugin(PluginFixture.pluginName(this.plugins - 1));
+        this.dependentClassLoader = (PluginClassLoader) this.dependentPlugin.getClass().getClassLoader();
+
+        this.baseClassNames = new String[this.classesPerPlugin];
+        this.dependentClassNames = new String[this.classesPerPlugin];
+        for (int clazz = 0; clazz < this.classesPerPlugin; clazz++) {
+            this.baseClassNames[clazz] = PluginFixture.className(0, clazz);
+            this.dependentClassNames[clazz] = PluginFixture.className(this.plugins - 1, clazz);
+
+            // Define all classes of the base plugin once
+            this.dependentClassLoader.loadClass(this.baseClassNames[clazz]);
+        }
+    }
+
+    @TearDown
+    public void deletePlugins() throws Exception {
+        PluginFixture.delete(this.directory.getParentFile());
+    }
+
+    @Benchmark
+    public Class<?> crossPluginLookup(Cursor cursor) throws Exception {
+        return this.dependentClassLoader.loadClass(this.baseClassNames[cursor.next(this.baseClassNames.length)]);
+    }
+
+    @Benchmark
+    public Class<?> missingClassLookup() {
+        try {
+            return this.dependentClassLoader.loadClass("org.slf4j.impl.StaticLoggerBinder");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    public void defineAllClasses(FreshClassLoader freshClassLoader, Blackhole blackhole) throws Exception {
+        for (String className : this.dependentClassNames) {
+            blackhole.consume(freshClassLoader.classLoader.loadClass(className));
+        }
+    }
+
+    /**
+     * Position of each thread in the class names
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        int next(int length) {
+            this.index = (this.index + 1) % length;
+            return this.index;
+        }
+    }
+
+    /**
+     * New class loader of the dependent plugin without any defined classes
+     */
+    @State(Scope.Thread)
+    public static class FreshClassLoader {
+        private PluginClassLoader classLoader;
+
+        @Setup(Level.Invocation)
+        public void createClassLoader(ClassLoadingBenchmark benchmark) throws Exception {
+            Plugin plugin = benchmark.dependentPlugin;
+            this.classLoader = new PluginClassLoader(benchmark.getClass().getClassLoader(),
+                    Collections.singletonList(benchmark.baseClassLoader), benchmark.core, benchmark.pluginLoader,
+                    plugin.getPluginInfo(), plugin.getDataDirectory(), plugin.getJarFile());
+        }
+
+        @TearDown(Level.Invocation)
+        public void closeClassLoader() throws Exception {
+            this.classLoader.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package de.labystudio.pluginloader.benchmark;
+
+import de.labystudio.pluginloader.plugin.dependency.DependencyResolution;
+import de.labystudio.pluginloader.plugin.dependency.DependencyResolver;
+import de.labystudio.pluginloader.plugin.meta.DependingPlugin;
+import de.labystudio.pluginloader.plugin.meta.PluginMeta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the dependency resolution of the depending plugin queue
+ *
+ * @author LabyStudio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DependencyResolutionBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int plugins;
+
+    @Param({"CHAIN", "FAN_OUT", "DIAMOND"})
+    public PluginFixture.Shape shape;
+
+    private final DependencyResolver resolver = new DependencyResolver();
+    private List<DependingPlugin> queue;
+
+    @Setup
+    public void createQueue() {
+        // Dependent plugins first, the worst case for repeated queue scans
+        this.queue = new ArrayList<>(this.plugins);
+        for (int plugin = this.plugins - 1; plugin >= 0; plugin--) {
+            String[] depends = PluginFixture.dependsOf(plugin, this.plugins, this.shape);
+            PluginMeta meta = new PluginMeta(PluginFixture.pluginName(plugin), PluginFixture.mainClass(plugin),
+                    null, null, depends);
+            this.queue.add(new DependingPlugin(depends, meta, new File(PluginFixture.pluginName(plugin) + ".jar")));
+        }
+    }
+
+    @Benchmark
+    public DependencyResolution resolve() {
+        return this.resolver.resolve(this.queue, name -> false);
+    }
+}
@@ -0,0 +1,88 @@
+package de.labystudio.pluginloader.benchmark;
+
+import de.labystudio.pluginloader.Core;
+import de.labystudio.pluginloader.PluginLoader;
+import de.labystudio.pluginloader.util.VirtualThreads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the startup of a plugin directory from discovery to the last enabled plugin
+ *
+ * @author LabyStudio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class LoadDirectoryBenchmark {
+
+    @Param({"50", "200"})
+    public int plugins;
+
+    @Param({"CHAIN", "FAN_OUT", "DIAMOND"})
+    public PluginFixture.Shape shape;
+
+    @Param({"10"})
+    public int classesPerPlugin;
+
+    @Param({"true", "false"})
+    public boolean index;
+
+    @Param({"false", "true"})
+    public boolean parallelEnable;
+
+    private final Core core = new Core() {
+    };
+
+    private File directory;
+    private ExecutorService enableExecutor;
+    private PluginLoader pluginLoader;
+
+    @Setup(Level.Trial)
+    public void createPlugins() throws Exception {
+        this.directory = PluginFixture.createPluginDirectory(this.plugins, this.shape, this.classesPerPlugin);
+        this.enableExecutor = VirtualThreads.newExecutor("Benchmark-Enable");
+    }
+
+    @Setup(Level.Iteration)
+    public void createLoader() {
+        this.pluginLoader = new PluginLoader(this.core, this.directory, getClass().getClassLoader(), message -> {
+        });
+        this.pluginLoader.setIndexEnabled(this.index);
+        this.pluginLoader.setEnableExecutor(this.parallelEnable ? this.enableExecutor : null);
+    }
+
+    @Benchmark
+    public PluginLoader loadPluginsInDirectory() {
+        this.pluginLoader.loadPluginsInDirectory();
+        return this.pluginLoader;
+    }
+
+    @TearDown(Level.Iteration)
+    public void unloadPlugins() {
+        this.pluginLoader.unloadPlugins(new ArrayList<>(this.pluginLoader.getPlugins()));
+    }
+
+    @TearDown(Level.Trial)
+    public void deletePlugins() throws Exception {
+        this.enableExecutor.shutdownNow();
+        PluginFixture.delete(this.directory.getParentFile());
+    }
+}
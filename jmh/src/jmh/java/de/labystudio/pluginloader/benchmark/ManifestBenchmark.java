@@ -0,0 +1,59 @@
+package de.labystudio.pluginloader.benchmark;
+
+import com.google.gson.Gson;
+import de.labystudio.pluginloader.plugin.meta.PluginMeta;
+import de.labystudio.pluginloader.plugin.meta.PluginMetaReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming plugin meta reader with the previous scanner and Gson approach.
+ * Run with the gc profiler to compare the allocations per plugin jar.
+ *
+ * @author LabyStudio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ManifestBenchmark {
+
+    private static final Gson GSON = new Gson();
+
+    private final byte[] manifest = ("{\n"
+            + "  \"name\": \"ExamplePlugin\",\n"
+            + "  \"main\": \"com.example.plugin.ExamplePlugin\",\n"
+            + "  \"authors\": [\"LabyStudio\", \"Benchmark\"],\n"
+            + "  \"description\": \"Example plugin with a typical plugin meta file\",\n"
+            + "  \"depends\": [\"Base\", \"Commands\", \"Database\", \"Permissions\", \"Scheduler\"]\n"
+            + "}\n").getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public PluginMeta streamingReader() throws Exception {
+        return PluginMetaReader.read(new ByteArrayInputStream(this.manifest), "plugin.json");
+    }
+
+    @Benchmark
+    public PluginMeta scannerAndGson() {
+        StringBuilder json = new StringBuilder();
+        Scanner scanner = new Scanner(new ByteArrayInputStream(this.manifest));
+        while (scanner.hasNextLine()) {
+            json.append(scanner.nextLine());
+        }
+        scanner.close();
+
+        return GSON.fromJson(json.toString(), PluginMeta.class);
+    }
+}
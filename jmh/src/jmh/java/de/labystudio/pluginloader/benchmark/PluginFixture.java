@@ -0,0 +1,231 @@
+package de.labystudio.pluginloader.benchmark;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates a plugin directory with synthetic plugin jars for the benchmarks
+ *
+ * @author LabyStudio
+ */
+public class PluginFixture {
+
+    private PluginFixture() {
+    }
+
+    /**
+     * Create a temporary plugin directory with the given amount of plugins
+     *
+     * @param plugins          Amount of plugins
+     * @param shape            Shape of the dependency graph
+     * @param classesPerPlugin Amount of additional classes in each plugin
+     * @return Plugin directory
+     * @throws IOException Exception while writing the jar files
+     */
+    public static File createPluginDirectory(int plugins, Shape shape, int classesPerPlugin) throws IOException {
+        Path root = Files.createTempDirectory("pluginloader-jmh");
+        Path sources = Files.createDirectories(root.resolve("src"));
+        Path classes = Files.createDirectories(root.resolve("classes"));
+        Path directory = Files.createDirectories(root.resolve("plugins"));
+
+        // Generate the sources of all plugins
+        List<String> sourceFiles = new ArrayList<>();
+        for (int plugin = 0; plugin < plugins; plugin++) {
+            Path packageDirectory = Files.createDirectories(sources.resolve(packageName(plugin).replace('.', '/')));
+
+            sourceFiles.add(write(packageDirectory.resolve("Main.java"), "package " + packageName(plugin) + ";\n"
+                    + "public class Main extends de.labystudio.pluginloader.plugin.Plugin {\n"
+                    + "    @Override\n"
+                    + "    public void onEnable() {\n"
+                    + "    }\n"
+                    + "}\n"));
+
+            for (int clazz = 0; clazz < classesPerPlugin; clazz++) {
+                sourceFiles.add(write(packageDirectory.resolve("C" + clazz + ".java"), "package " + packageName(plugin) + ";\n"
+                        + "public class C" + clazz + " {\n"
+                        + "    public static int value() {\n"
+                        + "        return " + clazz + ";\n"
+                        + "    }\n"
+                        + "}\n"));
+            }
+        }
+
+        // Compile all plugins at once, they don't reference each other
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("The benchmark fixture requires a JDK to compile the plugins");
+        }
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-classpath");
+        arguments.add(System.getProperty("java.class.path"));
+        arguments.add("-d");
+        arguments.add(classes.toString());
+        arguments.addAll(sourceFiles);
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("Could not compile the benchmark plugins");
+        }
+
+        // Package each plugin into its own jar file
+        for (int plugin = 0; plugin < plugins; plugin++) {
+            File jarFile = directory.resolve(pluginName(plugin) + ".jar").toFile();
+            try (JarOutputStream outputStream = new JarOutputStream(Files.newOutputStream(jarFile.toPath()))) {
+                putEntry(outputStream, "plugin.json", pluginJson(plugin, plugins, shape).getBytes(StandardCharsets.UTF_8));
+
+                String packagePath = packageName(plugin).replace('.', '/');
+                try (Stream<Path> stream = Files.list(classes.resolve(packagePath))) {
+                    for (Path classFile : (Iterable<Path>) stream::iterator) {
+                        putEntry(outputStream, packagePath + "/" + classFile.getFileName(), Files.readAllBytes(classFile));
+                    }
+                }
+            }
+        }
+
+        delete(sources.toFile());
+        delete(classes.toFile());
+        return directory.toFile();
+    }
+
+    /**
+     * Get the names of the depending plugins of the given plugin
+     *
+     * @param plugin  Index of the plugin
+     * @param plugins Amount of plugins
+     * @param shape   Shape of the dependency graph
+     * @return Names of the depending plugins
+     */
+    public static String[] dependsOf(int plugin, int plugins, Shape shape) {
+        if (plugin == 0) {
+            return new String[0];
+        }
+
+        switch (shape) {
+            case CHAIN:
+                // Each plugin depends on the previous one
+                return new String[]{pluginName(plugin - 1)};
+            case FAN_OUT:
+                // All plugins depend on the first one
+                return new String[]{pluginName(0)};
+            case DIAMOND:
+                // The last plugin depends on all plugins in the middle, the middle plugins depend on the first one
+                if (plugin < plugins - 1 || plugins < 3) {
+                    return new String[]{pluginName(0)};
+                }
+                String[] depends = new String[plugins - 2];
+                for (int i = 1; i < plugins - 1; i++) {
+                    depends[i - 1] = pluginName(i);
+                }
+                return depends;
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+    }
+
+    /**
+     * Get the name of the given plugin
+     *
+     * @param plugin Index of the plugin
+     * @return Plugin name
+     */
+    public static String pluginName(int plugin) {
+        return "Plugin" + plugin;
+    }
+
+    /**
+     * Get the binary name of an additional class of the given plugin
+     *
+     * @param plugin Index of the plugin
+     * @param clazz  Index of the class
+     * @return Binary class name
+     */
+    public static String className(int plugin, int clazz) {
+        return packageName(plugin) + ".C" + clazz;
+    }
+
+    /**
+     * Get the main class of the given plugin
+     *
+     * @param plugin Index of the plugin
+     * @return Binary name of the main class
+     */
+    public static String mainClass(int plugin) {
+        return packageName(plugin) + ".Main";
+    }
+
+    /**
+     * Delete the given file or directory recursively
+     *
+     * @param file File or directory to delete
+     * @throws IOException Exception while deleting
+     */
+    public static void delete(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        try (Stream<Path> stream = Files.walk(file.toPath())) {
+            for (Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static String packageName(int plugin) {
+        return "bench.p" + plugin;
+    }
+
+    private static String pluginJson(int plugin, int plugins, Shape shape) {
+        StringBuilder depends = new StringBuilder();
+        for (String depend : dependsOf(plugin, plugins, shape)) {
+            depends.append(depends.length() == 0 ? "" : ", ").append('"').append(depend).append('"');
+        }
+        return "{\n"
+                + "  \"name\": \"" + pluginName(plugin) + "\",\n"
+                + "  \"main\": \"" + mainClass(plugin) + "\",\n"
+                + "  \"authors\": [\"Benchmark\"],\n"
+                + "  \"description\": \"Synthetic benchmark plugin\",\n"
+                + "  \"depends\": [" + depends + "]\n"
+                + "}\n";
+    }
+
+    private static String write(Path path, String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path.toString();
+    }
+
+    private static void putEntry(JarOutputStream outputStream, String name, byte[] content) throws IOException {
+        outputStream.putNextEntry(new JarEntry(name));
+        outputStream.write(content);
+        outputStream.closeEntry();
+    }
+
+    /**
+     * Shape of the generated dependency graph
+     */
+    public enum Shape {
+
+        /**
+         * Each plugin depends on the previous one
+         */
+        CHAIN,
+
+        /**
+         * All plugins depend on the first one
+         */
+        FAN_OUT,
+
+        /**
+         * The middle plugins depend on the first one and the last plugin depends on all middle plugins
+         */
+        DIAMOND
+    }
+}
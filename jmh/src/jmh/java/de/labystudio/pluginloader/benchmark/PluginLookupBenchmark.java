@@ -0,0 +1,109 @@
+package de.labystudio.pluginloader.benchmark;
+
+import de.labystudio.pluginloader.Core;
+import de.labystudio.pluginloader.PluginLoader;
+import de.labystudio.pluginloader.plugin.Plugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures plugin lookups from many threads, with and without a concurrent reload
+ *
+ * @author LabyStudio
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PluginLookupBenchmark {
+
+    @Param({"200"})
+    public int plugins;
+
+    private final Core core = new Core() {
+    };
+
+    private File directory;
+    private PluginLoader pluginLoader;
+    private String[] names;
+    private String leafName;
+
+    @Setup
+    public void loadPlugins() throws Exception {
+        this.directory = PluginFixture.createPluginDirectory(this.plugins, PluginFixture.Shape.FAN_OUT, 1);
+        this.pluginLoader = new PluginLoader(this.core, this.directory, getClass().getClassLoader(), message -> {
+        });
+        this.pluginLoader.loadPluginsInDirectory();
+
+        this.names = new String[this.plugins];
+        for (int plugin = 0; plugin < this.plugins; plugin++) {
+            this.names[plugin] = PluginFixture.pluginName(plugin);
+        }
+
+        // Nothing depends on the last plugin of a fan out
+        this.leafName = PluginFixture.pluginName(this.plugins - 1);
+    }
+
+    @TearDown
+    public void deletePlugins() throws Exception {
+        for (String name : this.names) {
+            Plugin plugin = this.pluginLoader.getPlugin(name);
+            if (plugin != null) {
+                this.pluginLoader.unloadPlugin(plugin);
+            }
+        }
+        PluginFixture.delete(this.directory.getParentFile());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Plugin getPlugin(Cursor cursor) {
+        return this.pluginLoader.getPlugin(this.names[cursor.next(this.names.length)]);
+    }
+
+    @Benchmark
+    @Group("readWhileReloading")
+    @GroupThreads(7)
+    public Plugin getPluginWhileReloading(Cursor cursor) {
+        return this.pluginLoader.getPlugin(this.names[cursor.next(this.names.length)]);
+    }
+
+    @Benchmark
+    @Group("readWhileReloading")
+    @GroupThreads(1)
+    public void reloadLeafPlugin() throws Exception {
+        Plugin plugin = this.pluginLoader.getPlugin(this.leafName);
+        if (plugin != null) {
+            this.pluginLoader.reloadPlugin(plugin);
+        }
+    }
+
+    /**
+     * Position of each thread in the plugin names
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        int next(int length) {
+            this.index = (this.index + 1) % length;
+            return this.index;
+        }
+    }
+}
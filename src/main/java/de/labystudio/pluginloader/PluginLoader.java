@@ -1,18 +1,57 @@
 package de.labystudio.pluginloader;
 
-import com.google.gson.Gson;
+import de.labystudio.pluginloader.event.EventBus;
+import de.labystudio.pluginloader.metrics.LifecyclePhase;
+import de.labystudio.pluginloader.plugin.ClassLoaderLeakDetector;
+import de.labystudio.pluginloader.plugin.ClassPreloadProfile;
 import de.labystudio.pluginloader.plugin.Plugin;
 import de.labystudio.pluginloader.plugin.PluginClassLoader;
+import de.labystudio.pluginloader.plugin.PluginResult;
+import de.labystudio.pluginloader.plugin.dependency.DependencyResolution;
+import de.labystudio.pluginloader.plugin.dependency.DependencyResolver;
 import de.labystudio.pluginloader.plugin.meta.DependingPlugin;
+import de.labystudio.pluginloader.plugin.meta.PluginIndex;
 import de.labystudio.pluginloader.plugin.meta.PluginMeta;
+import de.labystudio.pluginloader.plugin.meta.PluginMetaException;
+import de.labystudio.pluginloader.plugin.meta.PluginMetaReader;
+import de.labystudio.pluginloader.plugin.verification.JarVerifier;
+import de.labystudio.pluginloader.plugin.verification.PluginVerificationException;
+import de.labystudio.pluginloader.scheduler.PluginScheduler;
+import de.labystudio.pluginloader.service.ServiceRegistry;
+import de.labystudio.pluginloader.util.DirectoryWatcher;
+import de.labystudio.pluginloader.util.NamedThreadFactory;
+import de.labystudio.pluginloader.util.VirtualThreads;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -24,9 +63,14 @@ import java.util.jar.JarFile;
 public class PluginLoader {
 
     /**
-     * Gson instance to load the meta file
+     * File name of the plugin meta index in the plugin directory
      */
-    private static final Gson GSON = new Gson();
+    private static final String INDEX_FILE_NAME = ".plugins.index.json";
+
+    /**
+     * File name of the class preload profile in the plugin directory
+     */
+    private static final String PRELOAD_PROFILE_FILE_NAME = ".plugins.preload.json";
 
     /**
      * The instance of the core project
@@ -48,15 +92,170 @@ public class PluginLoader {
      */
     private final PluginLoaderLogger logger;
 
+    /**
+     * Listeners for the timings and failures of each plugin
+     */
+    private final List<PluginLoaderListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Dependency resolver to compute the load order of the plugins
+     */
+    private final DependencyResolver dependencyResolver = new DependencyResolver();
+
+    /**
+     * Lock for all operations that load or unload plugins.
+     * Reading the loaded plugins never requires this lock.
+     */
+    private final Object lifecycleLock = new Object();
+
     /**
      * Plugin loading queue. All plugins in this list are waiting for the depending plugin to load.
+     * Only accessed while holding the lifecycle lock.
      */
     private final List<DependingPlugin> dependingPluginList = new ArrayList<>();
 
     /**
-     * List of all loaded plugins
+     * List of all loaded plugins. Readable from any thread without locking.
+     */
+    private final Map<String, Plugin> plugins = new ConcurrentHashMap<>();
+
+    /**
+     * Lazy plugins that are registered but not activated yet
+     */
+    private final Map<String, LazyPlugin> lazyPlugins = new ConcurrentHashMap<>();
+
+    /**
+     * Total time in nanoseconds spent activating lazy plugins on first use instead of during the startup
+     */
+    private final AtomicLong lazyActivationNanos = new AtomicLong();
+
+    /**
+     * Tracks the class loaders of unloaded plugins until they are garbage collected
+     */
+    private final ClassLoaderLeakDetector leakDetector = new ClassLoaderLeakDetector();
+
+    /**
+     * Size and modification time of each jar file when it was last read by the loader, by the absolute jar file
+     */
+    private final Map<File, JarStamp> jarStamps = new ConcurrentHashMap<>();
+
+    /**
+     * Verifies the jar files against the trusted digests and their signatures before they are opened
+     */
+    private final JarVerifier jarVerifier;
+
+    /**
+     * Services that the plugins provide to each other
+     */
+    private final ServiceRegistry serviceRegistry = new ServiceRegistry();
+
+    /**
+     * Delivers events to the listeners of the plugins
+     */
+    private final EventBus eventBus;
+
+    /**
+     * Executors and schedulers of the loaded plugins by the plugin name. Created on first use.
+     */
+    private final Map<String, PluginScheduler> schedulers = new ConcurrentHashMap<>();
+
+    /**
+     * Plugins whose scheduler is shut down. No new scheduler is created for them until their class loader is released.
+     */
+    private final Set<Plugin> unloadingPlugins = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Plugins whose enable or disable task timed out but is still running, by the plugin name.
+     * The future completes once the task returned and the plugin was released. The name can't be loaded until then.
+     */
+    private final Map<String, CompletableFuture<Void>> finishingPlugins = new ConcurrentHashMap<>();
+
+    /**
+     * Lifecycle call of the current thread while it creates, enables or disables a plugin on behalf of the thread that holds the lifecycle lock
+     */
+    private final ThreadLocal<LifecycleCall> lifecycleTask = new ThreadLocal<>();
+
+    /**
+     * Read-only view of all loaded plugins
+     */
+    private final Collection<Plugin> pluginsView = Collections.unmodifiableCollection(this.plugins.values());
+
+    /**
+     * Maximum amount of threads to open the jar files and parse the plugin meta files in parallel
+     */
+    private int discoveryThreads = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * Keep a persistent index of the plugin meta to skip opening unchanged jar files
+     */
+    private boolean indexEnabled = true;
+
+    /**
+     * Compare the content hash of the jar files with the index in addition to the size and modification time
+     */
+    private boolean indexContentHash;
+
+    /**
+     * Executor to enable independent plugins of the same dependency wave in parallel.
+     * Plugins are enabled one by one on the calling thread if no executor is set.
+     */
+    private ExecutorService enableExecutor;
+
+    /**
+     * Executor to disable independent plugins of the same dependency wave in parallel.
+     * Plugins are disabled one by one on the calling thread if no executor is set.
+     */
+    private ExecutorService disableExecutor;
+
+    /**
+     * Profile of the classes each plugin loaded during previous runs. Null if class preloading is disabled.
+     */
+    private volatile ClassPreloadProfile classPreloadProfile;
+
+    /**
+     * Executor to preload the recorded classes of the plugins in the background
+     */
+    private ExecutorService preloadExecutor;
+
+    /**
+     * Run the static initializers of the preloaded classes instead of only loading and linking them
+     */
+    private volatile boolean classPreloadInitialization;
+
+    /**
+     * Watches the plugin directory to hot reload changed jar files. Null if the directory is not watched.
+     */
+    private DirectoryWatcher directoryWatcher;
+
+    /**
+     * Executor for the asynchronous lifecycle operations and for enabling or disabling plugins with a timeout
+     */
+    private volatile ExecutorService lifecycleExecutor = VirtualThreads.newExecutor("PluginLoader-Lifecycle");
+
+    /**
+     * Maximum time in milliseconds for a plugin to create its instance and finish {@link Plugin#onEnable()}. Zero to wait endlessly.
+     */
+    private long enableTimeoutMillis;
+
+    /**
+     * Maximum time in milliseconds for a plugin to finish {@link Plugin#onDisable()}. Zero to wait endlessly.
+     */
+    private long disableTimeoutMillis;
+
+    /**
+     * Default amount of threads of the plugin executors if the plugin json does not specify it
+     */
+    private int pluginThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Run the tasks of the plugin executors on virtual threads if the runtime supports them
+     */
+    private boolean pluginVirtualThreads;
+
+    /**
+     * Maximum time in milliseconds for the tasks of an unloaded plugin to finish before they are interrupted. Zero to wait endlessly.
      */
-    private final Map<String, Plugin> plugins = new HashMap<>();
+    private long schedulerShutdownTimeoutMillis = TimeUnit.SECONDS.toMillis(5);
 
     /**
      * Plugin loader to load or unload classes
@@ -71,186 +270,1798 @@ public class PluginLoader {
         this.directory = directory;
         this.classLoader = classLoader;
         this.logger = logger;
+        this.eventBus = new EventBus(logger);
+        this.jarVerifier = new JarVerifier(logger);
     }
 
     /**
-     * Unload given plugin
+     * Unload given plugin and all plugins that depend on it
      *
      * @param plugin Plugin to unload
      */
     public void unloadPlugin(Plugin plugin) {
-        plugin.onDisable();
+        unloadPlugins(Collections.singleton(plugin));
+    }
+
+    /**
+     * Unload given plugin and all plugins that depend on it asynchronously on the lifecycle executor
+     *
+     * @param plugin Plugin to unload
+     * @return Future with the result of the given plugin
+     */
+    public CompletableFuture<PluginResult> unloadPluginAsync(Plugin plugin) {
+        return CompletableFuture.supplyAsync(() -> {
+            // The given plugin is always unloaded last
+            List<PluginResult> results = unloadPlugins(Collections.singleton(plugin));
+            if (results.isEmpty()) {
+                return new PluginResult(plugin.getPluginInfo().getName(), plugin.getJarFile(), PluginResult.Status.FAILED, null,
+                        new IllegalStateException("Plugin is not loaded"));
+            }
+            return results.get(results.size() - 1);
+        }, getLifecycleExecutor());
+    }
+
+    /**
+     * Unload the given plugins and all plugins that depend on them in one pass.
+     * Dependent plugins are disabled before their dependencies. Plugins that don't depend on each other
+     * are disabled in parallel if a disable executor is set. Plugins that are not loaded anymore are ignored.
+     *
+     * @param plugins Plugins to unload
+     * @return Unload results of all affected plugins in the order they were unloaded
+     */
+    public List<PluginResult> unloadPlugins(Collection<Plugin> plugins) {
+        synchronized (this.lifecycleLock) {
+            // Plugins may already be unloaded as dependents of a previous call
+            Set<String> rootNames = new LinkedHashSet<>();
+            for (Plugin plugin : plugins) {
+                String name = plugin.getPluginInfo().getName();
+                if (this.plugins.get(name) == plugin) {
+                    rootNames.add(name);
+                }
+            }
+
+            List<PluginResult> results = new ArrayList<>();
+            unloadWithDependents(rootNames, results);
+            return results;
+        }
+    }
+
+    /**
+     * Unload the given plugins and all plugins that depend on them asynchronously on the lifecycle executor
+     *
+     * @param plugins Plugins to unload
+     * @return Future with the unload results of all affected plugins
+     */
+    public CompletableFuture<List<PluginResult>> unloadPluginsAsync(Collection<Plugin> plugins) {
+        return CompletableFuture.supplyAsync(() -> unloadPlugins(plugins), getLifecycleExecutor());
+    }
+
+    /**
+     * Disable the given plugin, unregister it and close its class loader.
+     * The plugin is unloaded even if it fails or times out to disable.
+     * Requires the lifecycle lock, held either by the calling thread or by the thread that waits for this call.
+     *
+     * @param plugin Plugin to unload
+     * @return Result of the plugin
+     */
+    private PluginResult disablePlugin(Plugin plugin) {
+        String name = plugin.getPluginInfo().getName();
+        PluginResult result;
+
+        long start = startTiming();
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        try {
+            callWithTimeout(() -> {
+                plugin.onDisable();
+                return null;
+            }, this.disableTimeoutMillis, finished);
+            firePhaseCompleted(name, plugin.getJarFile(), LifecyclePhase.DISABLE, start);
+            result = new PluginResult(name, plugin.getJarFile(), PluginResult.Status.UNLOADED, null, null);
+        } catch (TimeoutException e) {
+            this.logger.log("Plugin " + name + " did not finish disabling within " + this.disableTimeoutMillis + "ms");
+            firePhaseFailed(name, plugin.getJarFile(), LifecyclePhase.DISABLE, e);
+            result = new PluginResult(name, plugin.getJarFile(), PluginResult.Status.TIMED_OUT, null, e);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            this.logger.log("Error while disabling plugin " + name + ": " + e.getMessage());
+            firePhaseFailed(name, plugin.getJarFile(), LifecyclePhase.DISABLE, e);
+            result = new PluginResult(name, plugin.getJarFile(), PluginResult.Status.FAILED, null, e);
+        }
+
+        this.plugins.remove(name, plugin);
+        if (!finished.isDone()) {
+            // Stop serving other plugins while onDisable is still running
+            unregisterPlugin(plugin);
+        }
+
+        // The tasks and the class loader are released once onDisable returned
+        whenFinished(name, finished, () -> {
+            unregisterPlugin(plugin);
+            shutdownScheduler(plugin);
+            recordLoadedClasses(plugin);
+            releaseClassLoader(plugin);
+            this.schedulers.remove(name);
+            this.unloadingPlugins.remove(plugin);
+            invalidateLookupCaches();
+        });
 
-        this.plugins.remove(plugin.getPluginInfo().getName());
+        if (!this.listeners.isEmpty()) {
+            int definedClasses = ((PluginClassLoader) plugin.getClass().getClassLoader()).getDefinedClasses();
+            for (PluginLoaderListener listener : this.listeners) {
+                listener.onPluginUnloaded(plugin, definedClasses);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remove all services and event listeners of the given plugin
+     *
+     * @param plugin Unloaded or failed plugin
+     */
+    private void unregisterPlugin(Plugin plugin) {
+        this.serviceRegistry.unregisterAll(plugin);
+        this.eventBus.unregisterAll(plugin);
+    }
+
+    /**
+     * Run the given release task as soon as the enable or disable task of a plugin is no longer running.
+     * If the task timed out and still runs, the plugin name stays reserved until it returned.
+     *
+     * @param name     Name of the plugin
+     * @param finished Future that completes when the task is no longer running
+     * @param release  Task to release the plugin
+     */
+    private void whenFinished(String name, CompletableFuture<Void> finished, Runnable release) {
+        if (!finished.isDone()) {
+            this.finishingPlugins.put(name, finished);
+        }
+
+        finished.whenComplete((ignored, throwable) -> {
+            try {
+                release.run();
+            } finally {
+                if (this.finishingPlugins.remove(name, finished)) {
+                    this.logger.log("Released plugin " + name + " after its timed out task returned");
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop the tasks of an unloaded plugin.
+     * The scheduler stays registered and rejects new tasks until the class loader is released.
+     * No new scheduler is created for the plugin from now on.
+     *
+     * @param plugin The unloaded plugin
+     */
+    private void shutdownScheduler(Plugin plugin) {
+        String name = plugin.getPluginInfo().getName();
+
+        // Marked atomically with the scheduler creation, so a concurrently created scheduler is either shut down here or rejected
+        PluginScheduler scheduler = this.schedulers.compute(name, (key, existing) -> {
+            this.unloadingPlugins.add(plugin);
+            return existing;
+        });
+        if (scheduler != null && !scheduler.shutdown(this.schedulerShutdownTimeoutMillis)) {
+            this.logger.log("Tasks of plugin " + name + " did not stop within " + this.schedulerShutdownTimeoutMillis + "ms");
+        }
+    }
+
+    /**
+     * Close the class loader of an unloaded plugin and remove all references to it
+     *
+     * @param plugin The unloaded plugin
+     */
+    private void releaseClassLoader(Plugin plugin) {
+        String name = plugin.getPluginInfo().getName();
+        PluginClassLoader classLoader = (PluginClassLoader) plugin.getClass().getClassLoader();
+
+        // Remove the class loader from the delegation of all dependent plugins
+        for (Plugin loadedPlugin : this.plugins.values()) {
+            String[] depends = loadedPlugin.getPluginInfo().getDepends();
+            if (depends != null && Arrays.asList(depends).contains(name)) {
+                this.logger.log("Plugin " + loadedPlugin.getPluginInfo().getName() + " depends on unloaded plugin " + name);
+            }
+            ((PluginClassLoader) loadedPlugin.getClass().getClassLoader()).removeDependency(classLoader);
+        }
+
+        try {
+            classLoader.release();
+        } catch (IOException e) {
+            this.logger.log("Could not close jar file of plugin " + name + ": " + e.getMessage());
+        }
+
+        // Report the class loader if it is never garbage collected
+        this.leakDetector.track(name, classLoader);
     }
 
     /**
-     * Check if the given plugin is loaded
+     * Check if the given plugin is loaded.
+     * Lazy plugins count as loaded as soon as they are registered.
      *
      * @param pluginName Name of the plugin to check
      * @return Returns true if plugin is loaded
      */
     public boolean isLoaded(String pluginName) {
+        return this.plugins.containsKey(pluginName) || this.lazyPlugins.containsKey(pluginName);
+    }
+
+    /**
+     * Check if the given plugin is loaded and its instance is created.
+     * Unlike {@link #isLoaded(String)} this is false for lazy plugins that were not used yet.
+     *
+     * @param pluginName Name of the plugin to check
+     * @return Returns true if plugin is activated
+     */
+    public boolean isActivated(String pluginName) {
         return this.plugins.containsKey(pluginName);
     }
 
     /**
-     * Get plugin by name
+     * Get plugin by name.
+     * A registered lazy plugin is activated by the first call.
      *
      * @param pluginName Name of the plugin
      * @return Plugin with given name. Returns null when if plugin is not loaded.
      */
     public Plugin getPlugin(String pluginName) {
-        return this.plugins.get(pluginName);
+        // Activations by plugins that are enabled right now are part of the startup
+        LifecycleCall call = this.lifecycleTask.get();
+        return getPlugin(pluginName, call == null || !call.isAwaited());
+    }
+
+    /**
+     * Get plugin by name and activate it if it is a lazy plugin
+     *
+     * @param pluginName Name of the plugin
+     * @param onDemand   True if the plugin is used after the startup, false if a loading plugin needs it
+     * @return Plugin with given name or null if the plugin is not loaded
+     */
+    private Plugin getPlugin(String pluginName, boolean onDemand) {
+        Plugin plugin = this.plugins.get(pluginName);
+        if (plugin != null) {
+            return plugin;
+        }
+
+        LazyPlugin lazyPlugin = this.lazyPlugins.get(pluginName);
+        return lazyPlugin == null ? null : activateLazyPlugin(lazyPlugin, onDemand);
+    }
+
+    /**
+     * Get all loaded plugins.
+     * The returned view is safe to iterate while plugins are loaded or unloaded and never blocks them.
+     * Changes during the iteration may or may not be visible.
+     *
+     * @return Read-only view of all loaded plugins
+     */
+    public Collection<Plugin> getPlugins() {
+        return this.pluginsView;
     }
 
     /**
      * Load all jar files in the plugin directory
      */
     public void loadPluginsInDirectory() {
+        loadDirectory();
+    }
+
+    /**
+     * Load all jar files in the plugin directory asynchronously on the lifecycle executor
+     *
+     * @return Future with the results of all plugins in the directory
+     */
+    public CompletableFuture<List<PluginResult>> loadPluginsInDirectoryAsync() {
+        return CompletableFuture.supplyAsync(this::loadDirectory, getLifecycleExecutor());
+    }
+
+    /**
+     * Load all jar files in the plugin directory
+     *
+     * @return Results of all queued plugins
+     */
+    private List<PluginResult> loadDirectory() {
         if (!this.directory.exists()) {
             this.directory.mkdir();
         }
 
-        // Load plugins
-        File[] dirFiles = this.directory.listFiles();
-        if (dirFiles != null) {
-            for (File pluginFile : dirFiles) {
-                if (!pluginFile.getName().endsWith(".jar"))
-                    continue;
+        // Remember the state of all jar files to detect changes after lost watch events
+        File[] jarFiles = listJarFiles();
+        for (File jarFile : jarFiles) {
+            recordJarStamp(jarFile);
+        }
+
+        // Verify all jar files and read their plugin meta files in parallel
+        List<PluginResult> results = new ArrayList<>();
+        Map<File, PluginMeta> discoveredPlugins = discoverPlugins(jarFiles, results);
 
-                loadPlugin(pluginFile);
+        synchronized (this.lifecycleLock) {
+            // Queue all plugins in a deterministic order
+            for (Map.Entry<File, PluginMeta> entry : discoveredPlugins.entrySet()) {
+                this.dependingPluginList.add(createDependingPlugin(entry.getValue(), entry.getKey()));
             }
+
+            // Load all plugins in dependency order
+            results.addAll(loadDependingPlugins(true));
+            return results;
         }
     }
 
     /**
-     * Load given jar file
+     * Open all jar files in the plugin directory and read their plugin meta files in parallel.
+     * The result is sorted by the jar file name and does not depend on which jar file finished first.
+     * Jar files that fail the {@link #getJarVerifier() verification} are left out.
      *
-     * @param pluginFile Plugin jar file to load
+     * @return Plugin meta of all valid plugin jar files ordered by the jar file name
      */
-    public void loadPlugin(File pluginFile) {
-        try {
-            JarFile jarFile = new JarFile(pluginFile);
+    public Map<File, PluginMeta> discoverPlugins() {
+        return discoverPlugins(listJarFiles(), new ArrayList<>());
+    }
 
-            if (jarFile.getJarEntry("plugin.json") == null) {
-                this.logger.log("Invalid plugin jar found: " + pluginFile.getName());
-                jarFile.close();
-                return;
-            }
+    /**
+     * Verify the given jar files of the plugin directory and read their plugin meta files in parallel
+     *
+     * @param dirFiles All jar files in the plugin directory ordered by the jar file name
+     * @param results  List to add the results of the rejected jar files to
+     * @return Plugin meta of all verified and valid plugin jar files ordered by the jar file name
+     */
+    private Map<File, PluginMeta> discoverPlugins(File[] dirFiles, List<PluginResult> results) {
+        Map<File, PluginMeta> discoveredPlugins = new LinkedHashMap<>();
+        if (dirFiles.length == 0) {
+            return discoveredPlugins;
+        }
 
-            JarEntry pluginJsonFile = jarFile.getJarEntry("plugin.json");
+        // Unchanged jar files are resolved from the index without opening them
+        PluginIndex index = this.indexEnabled
+                ? PluginIndex.load(new File(this.directory, INDEX_FILE_NAME), this.indexContentHash, this.logger)
+                : null;
 
-            StringBuilder json = new StringBuilder();
-            Scanner scanner = new Scanner(jarFile.getInputStream(pluginJsonFile));
-            while (scanner.hasNextLine()) {
-                json.append(scanner.nextLine());
-            }
-            scanner.close();
+        List<File> verifiedJarFiles = verifyJarFiles(Arrays.asList(dirFiles), results);
+        Map<File, Throwable> failures = new LinkedHashMap<>();
+        discoveredPlugins.putAll(readPluginMetas(verifiedJarFiles, index, failures));
 
-            PluginMeta pluginMeta = GSON.fromJson(json.toString(), PluginMeta.class);
-            PluginClassLoader classLoader = createClassLoader(this.classLoader, pluginMeta, pluginFile);
+        // Report unreadable jar files and jar files without plugin meta
+        for (File jarFile : verifiedJarFiles) {
+            Throwable failure = failures.get(jarFile);
+            if (failure == null && !discoveredPlugins.containsKey(jarFile)) {
+                failure = new PluginMetaException(jarFile.getName(), "Missing plugin.json", null);
+            }
+            if (failure != null) {
+                results.add(new PluginResult(null, jarFile, PluginResult.Status.FAILED, null, failure));
+            }
+        }
 
-            String[] depends = pluginMeta.getDepends();
-            if (depends == null || depends.length == 0) {
-                // Register plugin
-                loadPlugin(pluginMeta, classLoader);
-            } else {
-                this.dependingPluginList.add(new DependingPlugin(depends, pluginMeta, pluginFile));
+        if (index != null) {
+            try {
+                index.retain(Arrays.asList(dirFiles));
+                index.save();
+            } catch (IOException e) {
+                this.logger.log("Could not write plugin index: " + e.getMessage());
             }
+        }
 
-            jarFile.close();
+        return discoveredPlugins;
+    }
 
-            // Load depending plugins
-            loadDependingPlugins(classLoader);
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Get all jar files in the plugin directory
+     *
+     * @return Jar files sorted by the jar file name to make the load order independent of the file system
+     */
+    private File[] listJarFiles() {
+        File[] dirFiles = this.directory.listFiles((dir, name) -> name.endsWith(".jar"));
+        if (dirFiles == null) {
+            return new File[0];
         }
+        Arrays.sort(dirFiles, Comparator.comparing(File::getName));
+        return dirFiles;
     }
 
     /**
-     * Unload and load given plugin
+     * Remember the current size and modification time of the given jar file before it is read
      *
-     * @param plugin Plugin to reload
+     * @param jarFile Jar file that is about to be read
      */
-    public void reloadPlugin(Plugin plugin) throws Exception {
-        ClassLoader parentClassLoader = plugin.getClass().getClassLoader().getParent();
+    private void recordJarStamp(File jarFile) {
+        File absoluteFile = jarFile.getAbsoluteFile();
+        this.jarStamps.put(absoluteFile, JarStamp.of(absoluteFile));
+    }
+
+    /**
+     * Verify the given jar files in parallel if trusted digests are set or signatures are required.
+     * Unchanged jar files are resolved from the digest cache without reading them.
+     *
+     * @param jarFiles Jar files to verify
+     * @param results  List to add a {@link PluginResult.Status#VERIFICATION_FAILED} result for each rejected jar file to
+     * @return Verified jar files in the order of the given jar files
+     */
+    private List<File> verifyJarFiles(List<File> jarFiles, List<PluginResult> results) {
+        if (!this.jarVerifier.isEnabled() || jarFiles.isEmpty()) {
+            return jarFiles;
+        }
 
-        // Unload plugin
-        unloadPlugin(plugin);
+        Map<File, PluginVerificationException> failures = new LinkedHashMap<>();
+        List<File> verifiedJarFiles = new ArrayList<>(this.jarVerifier.verify(jarFiles, this.discoveryThreads, failures).keySet());
+        for (Map.Entry<File, PluginVerificationException> entry : failures.entrySet()) {
+            this.logger.log(entry.getValue().getMessage());
+            results.add(new PluginResult(null, entry.getKey(), PluginResult.Status.VERIFICATION_FAILED, null, entry.getValue()));
+        }
 
-        // Load plugin with previous parent class loader
-        loadPlugin(plugin.getPluginInfo(), createClassLoader(parentClassLoader, plugin.getPluginInfo(), plugin.getJarFile()));
+        try {
+            this.jarVerifier.saveCache();
+        } catch (IOException e) {
+            this.logger.log("Could not write jar digest cache: " + e.getMessage());
+        }
+        return verifiedJarFiles;
     }
 
     /**
-     * Iterate all plugins in the depending plugin list and check if it is ready to load
+     * Read the plugin meta files of the given jar files in parallel
      *
-     * @param parentClassLoader Parent class loader of the last loaded plugin
+     * @param jarFiles Plugin jar files to read
+     * @param index    Plugin meta index or null to always read the jar files
+     * @param failures Map to add the exception of each jar file that could not be read to
+     * @return Plugin meta of all valid plugin jar files in the order of the given jar files
      */
-    private void loadDependingPlugins(PluginClassLoader parentClassLoader) {
-        Iterator<DependingPlugin> iterator = this.dependingPluginList.iterator();
-
-        while (iterator.hasNext()) {
-            // Get next depending plugin
-            DependingPlugin dependingPlugin = iterator.next();
+    private Map<File, PluginMeta> readPluginMetas(List<File> jarFiles, PluginIndex index, Map<File, Throwable> failures) {
+        Map<File, PluginMeta> pluginMetas = new LinkedHashMap<>();
+        if (jarFiles.isEmpty()) {
+            return pluginMetas;
+        }
 
-            boolean readyToLoad = true;
-            for (String depend : dependingPlugin.getDepends()) {
-                if (!isLoaded(depend)) {
-                    readyToLoad = false;
-                    break;
-                }
+        int threads = Math.max(1, Math.min(this.discoveryThreads, jarFiles.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("PluginLoader-Discovery"));
+        try {
+            // Submit all jar files
+            List<Future<PluginMeta>> futures = new ArrayList<>(jarFiles.size());
+            for (File pluginFile : jarFiles) {
+                futures.add(executor.submit(() -> readPluginMeta(pluginFile, index)));
             }
 
-            // Register plugin if all depending plugins are loaded
-            if (readyToLoad) {
-                PluginMeta meta = dependingPlugin.getMeta();
-
+            // Collect the results in submission order
+            for (int i = 0; i < jarFiles.size(); i++) {
+                File pluginFile = jarFiles.get(i);
                 try {
-                    PluginClassLoader classLoader = createClassLoader(parentClassLoader, meta, dependingPlugin.getFile());
-                    loadPlugin(meta, classLoader);
-                } catch (Exception exception) {
-                    exception.printStackTrace();
+                    PluginMeta pluginMeta = futures.get(i).get();
+                    if (pluginMeta != null) {
+                        pluginMetas.put(pluginFile, pluginMeta);
+                    }
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    this.logger.log("Error while reading plugin " + pluginFile.getName() + ": " + e.getCause().getMessage());
+                    failures.put(pluginFile, e.getCause());
                 }
-
-                iterator.remove();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
         }
+        return pluginMetas;
     }
 
     /**
-     * Create plugin instance of given plugin meta and load it
+     * Load given jar file
      *
-     * @param meta        Plugin meta from the json
-     * @param classLoader Plugin class loader context
+     * @param pluginFile Plugin jar file to load
      */
-    private void loadPlugin(PluginMeta meta, PluginClassLoader classLoader) {
-        try {
-            Plugin plugin = classLoader.newInstance();
-
-            this.logger.log("Enabling addon " + meta.getName());
-            plugin.onEnable();
-
-            this.plugins.put(meta.getName(), plugin);
-        } catch (Throwable e) {
-            e.printStackTrace();
-            this.logger.log("Error while loading plugin " + meta.getName() + ": " + e.getMessage());
-        }
+    public void loadPlugin(File pluginFile) {
+        loadJarFile(pluginFile);
     }
 
     /**
-     * Create plugin class loader with given parent class loader
+     * Load given jar file asynchronously on the lifecycle executor
      *
-     * @param parentClassLoader Parent class loader
-     * @param meta              Plugin meta information from the json
-     * @param file              Plugin jar file
-     * @return Plugin class loader
-     * @throws Exception Exception during class loader instantiation
+     * @param pluginFile Plugin jar file to load
+     * @return Future with the result of the plugin in the jar file
      */
-    private PluginClassLoader createClassLoader(ClassLoader parentClassLoader, PluginMeta meta, File file) throws Exception {
-        File dataFolder = new File(this.directory, meta.getName());
-        return new PluginClassLoader(parentClassLoader, this.core, this, meta, dataFolder, file);
+    public CompletableFuture<PluginResult> loadPluginAsync(File pluginFile) {
+        return CompletableFuture.supplyAsync(() -> loadJarFile(pluginFile), getLifecycleExecutor());
+    }
+
+    /**
+     * Load given jar file and all queued plugins that depend on it
+     *
+     * @param pluginFile Plugin jar file to load
+     * @return Result of the plugin in the jar file
+     */
+    private PluginResult loadJarFile(File pluginFile) {
+        recordJarStamp(pluginFile);
+
+        List<PluginResult> rejected = new ArrayList<>(1);
+        if (verifyJarFiles(Collections.singletonList(pluginFile), rejected).isEmpty()) {
+            return rejected.get(0);
+        }
+
+        PluginMeta pluginMeta;
+        try {
+            pluginMeta = readPluginMeta(pluginFile);
+            if (pluginMeta == null) {
+                return new PluginResult(null, pluginFile, PluginResult.Status.FAILED, null,
+                        new PluginMetaException(pluginFile.getName(), "Missing plugin.json", null));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new PluginResult(null, pluginFile, PluginResult.Status.FAILED, null, e);
+        }
+
+        for (PluginResult result : registerPlugin(pluginMeta, pluginFile)) {
+            if (pluginMeta.getName().equals(result.getPluginName()) && result.getFile() == pluginFile) {
+                return result;
+            }
+        }
+        return new PluginResult(pluginMeta.getName(), pluginFile, PluginResult.Status.WAITING, null, null);
+    }
+
+    /**
+     * Read the plugin meta of the given jar file from the index or from the jar file if it changed
+     *
+     * @param pluginFile Plugin jar file to read
+     * @param index      Plugin meta index or null to always read the jar file
+     * @return Plugin meta from the json. Returns null if the jar file contains no plugin meta file.
+     * @throws Exception Exception while reading the jar file
+     */
+    private PluginMeta readPluginMeta(File pluginFile, PluginIndex index) throws Exception {
+        if (index != null) {
+            PluginIndex.Entry entry = index.lookup(pluginFile);
+            if (entry != null) {
+                if (entry.getMeta() == null) {
+                    this.logger.log("Invalid plugin jar found: " + pluginFile.getName());
+                }
+                return entry.getMeta();
+            }
+        }
+
+        PluginMeta pluginMeta = readPluginMeta(pluginFile);
+        if (index != null) {
+            index.update(pluginFile, pluginMeta);
+        }
+        return pluginMeta;
+    }
+
+    /**
+     * Read the plugin meta file of the given jar file
+     *
+     * @param pluginFile Plugin jar file to read
+     * @return Plugin meta from the json. Returns null if the jar file contains no plugin meta file.
+     * @throws Exception Exception while reading the jar file
+     */
+    private PluginMeta readPluginMeta(File pluginFile) throws Exception {
+        long start = startTiming();
+        try (JarFile jarFile = new JarFile(pluginFile)) {
+            JarEntry pluginJsonFile = jarFile.getJarEntry("plugin.json");
+            if (pluginJsonFile == null) {
+                this.logger.log("Invalid plugin jar found: " + pluginFile.getName());
+                firePhaseFailed(null, pluginFile, LifecyclePhase.META_READ,
+                        new PluginMetaException(pluginFile.getName(), "Missing plugin.json", null));
+                return null;
+            }
+
+            PluginMeta pluginMeta = PluginMetaReader.read(jarFile.getInputStream(pluginJsonFile), pluginFile.getName() + "!/plugin.json");
+            firePhaseCompleted(pluginMeta.getName(), pluginFile, LifecyclePhase.META_READ, start);
+            return pluginMeta;
+        } catch (Exception e) {
+            firePhaseFailed(null, pluginFile, LifecyclePhase.META_READ, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Queue the plugin of the given meta and load it as soon as all depending plugins are loaded
+     *
+     * @param pluginMeta Plugin meta from the json
+     * @param pluginFile Plugin jar file
+     * @return Results of all queued plugins
+     */
+    private List<PluginResult> registerPlugin(PluginMeta pluginMeta, File pluginFile) {
+        synchronized (this.lifecycleLock) {
+            this.dependingPluginList.add(createDependingPlugin(pluginMeta, pluginFile));
+
+            // Load the plugin and all depending plugins that are ready now
+            return loadDependingPlugins(false);
+        }
+    }
+
+    /**
+     * Create a depending plugin holder for the given plugin meta
+     *
+     * @param pluginMeta Plugin meta from the json
+     * @param pluginFile Plugin jar file
+     * @return Depending plugin holder
+     */
+    private DependingPlugin createDependingPlugin(PluginMeta pluginMeta, File pluginFile) {
+        String[] depends = pluginMeta.getDepends();
+        return new DependingPlugin(depends == null ? new String[0] : depends, pluginMeta, pluginFile);
+    }
+
+    /**
+     * Unload and load given plugin.
+     * The plugin meta is read again from the jar file and all dependent plugins are reloaded as well.
+     *
+     * @param plugin Plugin to reload
+     */
+    public void reloadPlugin(Plugin plugin) throws Exception {
+        reloadSubtree(plugin);
+    }
+
+    /**
+     * Unload and load given plugin and all plugins that depend on it in one pass.
+     * The affected plugins are disabled in reverse dependency order, all of their jar files are read again
+     * and they are enabled again in dependency order.
+     *
+     * @param plugin Root plugin of the subtree to reload
+     * @return Unload and load results of all affected plugins
+     */
+    public List<PluginResult> reloadSubtree(Plugin plugin) {
+        return reloadJarFiles(Collections.singleton(plugin.getJarFile()));
+    }
+
+    /**
+     * Unload and load given plugin and all of its dependent plugins asynchronously on the lifecycle executor
+     *
+     * @param plugin Plugin to reload
+     * @return Future with the unload and load results of all affected plugins
+     */
+    public CompletableFuture<List<PluginResult>> reloadPluginAsync(Plugin plugin) {
+        return CompletableFuture.supplyAsync(() -> reloadJarFiles(Collections.singleton(plugin.getJarFile())), getLifecycleExecutor());
+    }
+
+    /**
+     * Start watching the plugin directory and hot reload added, changed and removed jar files.
+     * Only the affected plugins and their dependent plugins are reloaded.
+     *
+     * @param debounceMillis Time without changes in milliseconds before the changed jar files are reloaded
+     * @throws IOException Exception while registering the watch service
+     */
+    public void startWatching(long debounceMillis) throws IOException {
+        synchronized (this.lifecycleLock) {
+            if (this.directoryWatcher != null) {
+                return;
+            }
+            if (!this.directory.exists()) {
+                this.directory.mkdir();
+            }
+
+            this.directoryWatcher = new DirectoryWatcher(this.directory.toPath(), debounceMillis,
+                    "PluginLoader-Watcher", this::onDirectoryChanged);
+            this.directoryWatcher.start();
+        }
+    }
+
+    /**
+     * Stop watching the plugin directory
+     */
+    public void stopWatching() {
+        synchronized (this.lifecycleLock) {
+            if (this.directoryWatcher == null) {
+                return;
+            }
+
+            try {
+                this.directoryWatcher.close();
+            } catch (IOException e) {
+                this.logger.log("Could not stop watching the plugin directory: " + e.getMessage());
+            }
+            this.directoryWatcher = null;
+        }
+    }
+
+    /**
+     * Reload all jar files of the plugin directory that changed
+     *
+     * @param changedPaths Changed paths in the plugin directory or the directory itself if all files may have changed
+     */
+    private void onDirectoryChanged(Set<Path> changedPaths) {
+        Set<File> changedJarFiles = new LinkedHashSet<>();
+
+        if (changedPaths.contains(this.directory.toPath())) {
+            // Events were lost, compare all existing and known jar files with their state when they were read
+            Set<File> jarFiles = new LinkedHashSet<>();
+            for (File jarFile : listJarFiles()) {
+                jarFiles.add(jarFile.getAbsoluteFile());
+            }
+            jarFiles.addAll(this.jarStamps.keySet());
+
+            for (File jarFile : jarFiles) {
+                if (!JarStamp.of(jarFile).equals(this.jarStamps.get(jarFile))) {
+                    changedJarFiles.add(jarFile);
+                }
+            }
+        } else {
+            for (Path path : changedPaths) {
+                if (path.getFileName().toString().endsWith(".jar")) {
+                    changedJarFiles.add(path.toFile());
+                }
+            }
+        }
+
+        if (!changedJarFiles.isEmpty()) {
+            reloadJarFiles(changedJarFiles);
+        }
+    }
+
+    /**
+     * Reload the plugins of the given jar files and all of their dependent plugins.
+     * The affected plugins are unloaded in reverse dependency order, their plugin meta is read again
+     * and they are loaded again in dependency order. New jar files are loaded and removed jar files stay unloaded.
+     *
+     * @param jarFiles Added, changed or removed jar files
+     * @return Unload and load results of all affected plugins
+     */
+    private List<PluginResult> reloadJarFiles(Collection<File> jarFiles) {
+        synchronized (this.lifecycleLock) {
+            Set<File> changedJarFiles = new LinkedHashSet<>();
+            for (File jarFile : jarFiles) {
+                changedJarFiles.add(jarFile.getAbsoluteFile());
+            }
+
+            // Unload the loaded and lazy plugins of the changed jar files and all of their dependent plugins
+            Set<String> changedPlugins = new LinkedHashSet<>();
+            for (Plugin plugin : this.plugins.values()) {
+                if (changedJarFiles.contains(plugin.getJarFile().getAbsoluteFile())) {
+                    changedPlugins.add(plugin.getPluginInfo().getName());
+                }
+            }
+            for (LazyPlugin lazyPlugin : this.lazyPlugins.values()) {
+                if (changedJarFiles.contains(lazyPlugin.dependingPlugin.getFile().getAbsoluteFile())) {
+                    changedPlugins.add(lazyPlugin.dependingPlugin.getMeta().getName());
+                }
+            }
+            List<PluginResult> results = new ArrayList<>();
+            List<File> unloadedJarFiles = unloadWithDependents(changedPlugins, results);
+
+            // Forget queued plugins of changed jar files
+            this.dependingPluginList.removeIf(plugin -> changedJarFiles.contains(plugin.getFile().getAbsoluteFile()));
+
+            // Read the plugin meta of all affected jar files again
+            Set<File> affectedJarFiles = new LinkedHashSet<>();
+            for (File jarFile : unloadedJarFiles) {
+                affectedJarFiles.add(jarFile.getAbsoluteFile());
+            }
+            affectedJarFiles.addAll(changedJarFiles);
+
+            List<File> existingJarFiles = new ArrayList<>(affectedJarFiles.size());
+            for (File jarFile : affectedJarFiles) {
+                if (jarFile.exists()) {
+                    recordJarStamp(jarFile);
+                    existingJarFiles.add(jarFile);
+                } else {
+                    this.jarStamps.remove(jarFile);
+                    this.logger.log("Plugin jar removed: " + jarFile.getName());
+                }
+            }
+
+            // Changed jar files have to be verified again, unchanged ones are resolved from the digest cache
+            existingJarFiles = verifyJarFiles(existingJarFiles, results);
+
+            Map<File, Throwable> failures = new LinkedHashMap<>();
+            for (Map.Entry<File, PluginMeta> entry : readPluginMetas(existingJarFiles, null, failures).entrySet()) {
+                this.dependingPluginList.add(createDependingPlugin(entry.getValue(), entry.getKey()));
+            }
+            for (Map.Entry<File, Throwable> entry : failures.entrySet()) {
+                results.add(new PluginResult(null, entry.getKey(), PluginResult.Status.FAILED, null, entry.getValue()));
+            }
+
+            // Load the affected plugins in dependency order
+            results.addAll(loadDependingPlugins(true));
+            return results;
+        }
+    }
+
+    /**
+     * Unload the given plugins and all plugins that depend on them in reverse dependency order.
+     * Lazy plugins in the dependent closure were never activated and are only removed.
+     *
+     * @param rootNames Names of the loaded or lazy plugins to unload
+     * @param results   List to add the unload results to
+     * @return Jar files of all unloaded and removed lazy plugins
+     */
+    private List<File> unloadWithDependents(Collection<String> rootNames, List<PluginResult> results) {
+        // Index the dependent plugins of each loaded and lazy plugin
+        Map<String, List<String>> dependentPlugins = new HashMap<>();
+        for (Plugin plugin : this.plugins.values()) {
+            indexDependents(dependentPlugins, plugin.getPluginInfo());
+        }
+        for (LazyPlugin lazyPlugin : this.lazyPlugins.values()) {
+            indexDependents(dependentPlugins, lazyPlugin.dependingPlugin.getMeta());
+        }
+
+        // Collect all transitive dependent plugins
+        Set<String> affectedNames = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>(rootNames);
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            if (affectedNames.add(name)) {
+                queue.addAll(dependentPlugins.getOrDefault(name, Collections.emptyList()));
+            }
+        }
+
+        // Lazy plugins have no instance to disable
+        List<File> unloadedJarFiles = new ArrayList<>(affectedNames.size());
+        Map<String, Plugin> affectedPlugins = new LinkedHashMap<>();
+        for (String name : affectedNames) {
+            Plugin plugin = this.plugins.get(name);
+            LazyPlugin lazyPlugin = plugin == null ? this.lazyPlugins.remove(name) : null;
+            if (plugin != null) {
+                affectedPlugins.put(name, plugin);
+            } else if (lazyPlugin != null) {
+                File jarFile = lazyPlugin.dependingPlugin.getFile();
+                results.add(new PluginResult(name, jarFile, PluginResult.Status.UNLOADED, null, null));
+                unloadedJarFiles.add(jarFile);
+            }
+        }
+
+        // Compute the dependency order of the affected plugins
+        List<DependingPlugin> affected = new ArrayList<>(affectedPlugins.size());
+        for (Plugin plugin : affectedPlugins.values()) {
+            affected.add(createDependingPlugin(plugin.getPluginInfo(), plugin.getJarFile()));
+        }
+        List<List<DependingPlugin>> waves = this.dependencyResolver.resolve(affected, name -> true).getWaves();
+
+        // Unload dependent plugins first, wave by wave
+        for (int i = waves.size() - 1; i >= 0; i--) {
+            List<Plugin> wave = new ArrayList<>(waves.get(i).size());
+            for (DependingPlugin dependingPlugin : waves.get(i)) {
+                Plugin plugin = affectedPlugins.get(dependingPlugin.getMeta().getName());
+                wave.add(plugin);
+                unloadedJarFiles.add(plugin.getJarFile());
+            }
+            results.addAll(disablePlugins(wave));
+        }
+        return unloadedJarFiles;
+    }
+
+    /**
+     * Add the given plugin to the dependent plugins of each of its dependencies
+     *
+     * @param dependentPlugins Dependent plugin names by the name of their dependency
+     * @param meta             Plugin meta of the dependent plugin
+     */
+    private static void indexDependents(Map<String, List<String>> dependentPlugins, PluginMeta meta) {
+        String[] depends = meta.getDepends();
+        if (depends != null) {
+            for (String depend : depends) {
+                dependentPlugins.computeIfAbsent(depend, key -> new ArrayList<>()).add(meta.getName());
+            }
+        }
+    }
+
+    /**
+     * Disable the given plugins that don't depend on each other.
+     * The plugins are disabled in parallel if a disable executor is set. Requires the lifecycle lock.
+     *
+     * @param wave Independent plugins to unload
+     * @return Results of the given plugins
+     */
+    private List<PluginResult> disablePlugins(List<Plugin> wave) {
+        List<PluginResult> results = new ArrayList<>(wave.size());
+        ExecutorService executor = this.disableExecutor;
+
+        if (executor == null || wave.size() <= 1) {
+            for (Plugin plugin : wave) {
+                results.add(disablePlugin(plugin));
+            }
+            return results;
+        }
+
+        // Disable all plugins of the wave at the same time
+        List<Future<PluginResult>> futures = new ArrayList<>(wave.size());
+        for (Plugin plugin : wave) {
+            futures.add(executor.submit(() -> disablePlugin(plugin)));
+        }
+
+        // Wait for the whole wave before their dependencies are unloaded
+        boolean interrupted = false;
+        for (int i = 0; i < wave.size(); i++) {
+            Plugin plugin = wave.get(i);
+            try {
+                results.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                interrupted = true;
+                results.add(new PluginResult(plugin.getPluginInfo().getName(), plugin.getJarFile(),
+                        PluginResult.Status.FAILED, null, e));
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                results.add(new PluginResult(plugin.getPluginInfo().getName(), plugin.getJarFile(),
+                        PluginResult.Status.FAILED, null, e.getCause()));
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return results;
+    }
+
+    /**
+     * Resolve the dependencies of all plugins in the depending plugin list and load the plugins that are ready.
+     * Plugins that are still waiting for a dependency stay in the list. Requires the lifecycle lock.
+     *
+     * @param reportUnresolved Log all plugins with missing dependencies
+     * @return Results of all queued plugins
+     */
+    private List<PluginResult> loadDependingPlugins(boolean reportUnresolved) {
+        DependencyResolution resolution = this.dependencyResolver.resolve(this.dependingPluginList, this::isLoaded);
+        List<PluginResult> results = new ArrayList<>();
+
+        // Dependency cycles will never resolve
+        for (List<String> cycle : resolution.getCycles()) {
+            this.logger.log("Dependency cycle detected between plugins: " + String.join(", ", cycle));
+        }
+        Set<DependingPlugin> processedPlugins = new HashSet<>(resolution.getDuplicates());
+        for (DependingPlugin duplicate : resolution.getDuplicates()) {
+            this.logger.log("Duplicate plugin " + duplicate.getMeta().getName() + " found in " + duplicate.getFile().getName());
+            results.add(new PluginResult(duplicate.getMeta().getName(), duplicate.getFile(), PluginResult.Status.FAILED, null,
+                    new IllegalStateException("Duplicate plugin name")));
+        }
+        if (reportUnresolved) {
+            for (Map.Entry<String, List<String>> entry : resolution.getMissingDependencies().entrySet()) {
+                this.logger.log("Plugin " + entry.getKey() + " is missing dependencies: " + String.join(", ", entry.getValue()));
+            }
+            for (String blockedPlugin : resolution.getBlockedPlugins()) {
+                this.logger.log("Plugin " + blockedPlugin + " is waiting for an unresolvable dependency");
+            }
+        }
+
+        // Plugins that failed or were skipped in this pass
+        Set<String> failedPlugins = new HashSet<>();
+
+        // Load all plugins wave by wave
+        for (List<DependingPlugin> wave : resolution.getWaves()) {
+            Map<DependingPlugin, PluginClassLoader> readyPlugins = new LinkedHashMap<>();
+
+            for (DependingPlugin dependingPlugin : wave) {
+                PluginMeta meta = dependingPlugin.getMeta();
+
+                // The previous instance did not return from a timed out onEnable or onDisable yet
+                if (this.finishingPlugins.containsKey(meta.getName())) {
+                    this.logger.log("Plugin " + meta.getName() + " is still running after a timeout");
+                    processedPlugins.add(dependingPlugin);
+                    failedPlugins.add(meta.getName());
+                    results.add(new PluginResult(meta.getName(), dependingPlugin.getFile(), PluginResult.Status.TIMED_OUT, null,
+                            new IllegalStateException("Previous instance is still running after a timeout")));
+                    continue;
+                }
+
+                if (isLoaded(meta.getName())) {
+                    this.logger.log("Plugin " + meta.getName() + " is already loaded");
+                    processedPlugins.add(dependingPlugin);
+                    results.add(new PluginResult(meta.getName(), dependingPlugin.getFile(), PluginResult.Status.FAILED, null,
+                            new IllegalStateException("Plugin is already loaded")));
+                    continue;
+                }
+
+                // Keep waiting if a dependency failed to load
+                if (!isReadyToLoad(dependingPlugin)) {
+                    failedPlugins.add(meta.getName());
+                    results.add(new PluginResult(meta.getName(), dependingPlugin.getFile(), PluginResult.Status.SKIPPED, null, null));
+                    continue;
+                }
+
+                processedPlugins.add(dependingPlugin);
+
+                // Lazy plugins are only registered and activated on first use
+                if (meta.isLazy()) {
+                    this.lazyPlugins.put(meta.getName(), new LazyPlugin(dependingPlugin));
+                    results.add(new PluginResult(meta.getName(), dependingPlugin.getFile(), PluginResult.Status.DEFERRED, null, null));
+                    continue;
+                }
+
+                try {
+                    PluginClassLoader classLoader = createClassLoader(meta, dependingPlugin.getFile());
+                    readyPlugins.put(dependingPlugin, classLoader);
+                } catch (PluginVerificationException exception) {
+                    failedPlugins.add(meta.getName());
+                    results.add(new PluginResult(meta.getName(), dependingPlugin.getFile(), PluginResult.Status.VERIFICATION_FAILED, null, exception));
+                } catch (Exception exception) {
+                    exception.printStackTrace();
+                    failedPlugins.add(meta.getName());
+                    results.add(new PluginResult(meta.getName(), dependingPlugin.getFile(), PluginResult.Status.FAILED, null, exception));
+                }
+            }
+
+            for (PluginResult result : loadPlugins(readyPlugins)) {
+                if (result.getStatus() != PluginResult.Status.LOADED) {
+                    failedPlugins.add(result.getPluginName());
+                }
+                results.add(result);
+            }
+        }
+
+        // Remove all processed plugins from the queue
+        this.dependingPluginList.removeAll(processedPlugins);
+
+        // All remaining plugins are still waiting for their dependencies
+        for (DependingPlugin dependingPlugin : this.dependingPluginList) {
+            if (!failedPlugins.contains(dependingPlugin.getMeta().getName())) {
+                results.add(new PluginResult(dependingPlugin.getMeta().getName(), dependingPlugin.getFile(),
+                        PluginResult.Status.WAITING, null, null));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Check if all depending plugins of the given plugin are loaded
+     *
+     * @param dependingPlugin Plugin to check
+     * @return True if all depending plugins are loaded
+     */
+    private boolean isReadyToLoad(DependingPlugin dependingPlugin) {
+        for (String depend : dependingPlugin.getDepends()) {
+            if (!isLoaded(depend)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create the plugin instances of all given plugins and load them.
+     * The plugins are enabled in parallel if an enable executor is set.
+     *
+     * @param readyPlugins Independent plugins with their class loader
+     * @return Results of the given plugins
+     */
+    private List<PluginResult> loadPlugins(Map<DependingPlugin, PluginClassLoader> readyPlugins) {
+        List<PluginResult> results = new ArrayList<>(readyPlugins.size());
+        ExecutorService executor = this.enableExecutor;
+
+        if (executor == null || readyPlugins.size() <= 1) {
+            for (Map.Entry<DependingPlugin, PluginClassLoader> entry : readyPlugins.entrySet()) {
+                results.add(registerEnabledPlugin(enablePlugin(entry.getKey(), entry.getValue())));
+            }
+        } else {
+            // Enable all plugins of the wave at the same time
+            Map<DependingPlugin, Future<PluginResult>> futures = new LinkedHashMap<>();
+            for (Map.Entry<DependingPlugin, PluginClassLoader> entry : readyPlugins.entrySet()) {
+                futures.put(entry.getKey(), executor.submit(() -> enablePlugin(entry.getKey(), entry.getValue())));
+            }
+
+            // Wait for the whole wave before the dependent plugins are loaded
+            boolean interrupted = false;
+            for (Map.Entry<DependingPlugin, Future<PluginResult>> entry : futures.entrySet()) {
+                DependingPlugin dependingPlugin = entry.getKey();
+                try {
+                    results.add(registerEnabledPlugin(entry.getValue().get()));
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    results.add(new PluginResult(dependingPlugin.getMeta().getName(), dependingPlugin.getFile(),
+                            PluginResult.Status.FAILED, null, e));
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    results.add(new PluginResult(dependingPlugin.getMeta().getName(), dependingPlugin.getFile(),
+                            PluginResult.Status.FAILED, null, e.getCause()));
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        invalidateLookupCaches();
+        return results;
+    }
+
+    /**
+     * Register the plugin of the given result if it was enabled successfully
+     *
+     * @param result Result of enabling the plugin
+     * @return The given result
+     */
+    private PluginResult registerEnabledPlugin(PluginResult result) {
+        if (result.getStatus() == PluginResult.Status.LOADED) {
+            Plugin plugin = result.getPlugin();
+            this.plugins.put(result.getPluginName(), plugin);
+
+            if (this.classPreloadProfile != null) {
+                preloadClasses(plugin);
+            }
+
+            if (!this.listeners.isEmpty()) {
+                int definedClasses = ((PluginClassLoader) plugin.getClass().getClassLoader()).getDefinedClasses();
+                for (PluginLoaderListener listener : this.listeners) {
+                    listener.onPluginLoaded(plugin, definedClasses);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create plugin instance of given plugin and enable it.
+     * The class loader is closed if the plugin fails or times out to enable.
+     *
+     * @param dependingPlugin Plugin meta and jar file
+     * @param classLoader     Plugin class loader context
+     * @return Result of the plugin
+     */
+    private PluginResult enablePlugin(DependingPlugin dependingPlugin, PluginClassLoader classLoader) {
+        PluginMeta meta = dependingPlugin.getMeta();
+        File file = dependingPlugin.getFile();
+        PluginResult result;
+
+        // The task may still run on another thread when it times out
+        AtomicReference<LifecyclePhase> phase = new AtomicReference<>(LifecyclePhase.MAIN_CLASS_LOAD);
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        try {
+            Plugin plugin = callWithTimeout(() -> {
+                long start = startTiming();
+                Plugin instance = classLoader.newInstance();
+                firePhaseCompleted(meta.getName(), file, LifecyclePhase.MAIN_CLASS_LOAD, start);
+                phase.set(LifecyclePhase.ENABLE);
+
+                this.logger.log("Enabling addon " + meta.getName());
+                start = startTiming();
+                instance.onEnable();
+                firePhaseCompleted(meta.getName(), file, LifecyclePhase.ENABLE, start);
+
+                return instance;
+            }, this.enableTimeoutMillis, finished);
+
+            return new PluginResult(meta.getName(), file, PluginResult.Status.LOADED, plugin, null);
+        } catch (TimeoutException e) {
+            this.logger.log("Plugin " + meta.getName() + " did not finish enabling within " + this.enableTimeoutMillis + "ms");
+            firePhaseFailed(meta.getName(), file, phase.get(), e);
+            result = new PluginResult(meta.getName(), file, PluginResult.Status.TIMED_OUT, null, e);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            this.logger.log("Error while loading plugin " + meta.getName() + ": " + e.getMessage());
+            firePhaseFailed(meta.getName(), file, phase.get(), e);
+            result = new PluginResult(meta.getName(), file, PluginResult.Status.FAILED, null, e);
+        }
+
+        // Services, listeners and tasks registered before the failure must not outlive the plugin
+        Plugin instance = classLoader.getPlugin();
+        if (instance != null && !finished.isDone()) {
+            unregisterPlugin(instance);
+        }
+
+        // A timed out onEnable may still register services and tasks, so they are released once it returned
+        whenFinished(meta.getName(), finished, () -> {
+            Plugin failedInstance = classLoader.getPlugin();
+            if (failedInstance != null) {
+                unregisterPlugin(failedInstance);
+                shutdownScheduler(failedInstance);
+            }
+
+            try {
+                classLoader.release();
+            } catch (IOException e) {
+                this.logger.log("Could not close jar file of plugin " + meta.getName() + ": " + e.getMessage());
+            }
+            this.schedulers.remove(meta.getName());
+            if (failedInstance != null) {
+                this.unloadingPlugins.remove(failedInstance);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Run the given task on the lifecycle executor and wait for it with a timeout.
+     * The task is interrupted if it does not finish in time, but it keeps running until it reacts to the interrupt.
+     *
+     * @param task          Task to run
+     * @param timeoutMillis Maximum time to wait in milliseconds or zero to run the task on the calling thread
+     * @param finished      Future to complete as soon as the task is no longer running, also after a timeout
+     * @param <T>           Result type of the task
+     * @return Result of the task
+     * @throws Throwable Exception of the task or {@link TimeoutException} if the task did not finish in time
+     */
+    private <T> T callWithTimeout(Callable<T> task, long timeoutMillis, CompletableFuture<Void> finished) throws Throwable {
+        if (timeoutMillis <= 0) {
+            // A nested call on the calling thread belongs to the call of the calling thread
+            LifecycleCall current = this.lifecycleTask.get();
+            try {
+                return callAsLifecycleTask(task, current != null ? current : new LifecycleCall());
+            } finally {
+                finished.complete(null);
+            }
+        }
+
+        // Either the task starts or the timeout skips it, but never both
+        AtomicBoolean claimed = new AtomicBoolean();
+        LifecycleCall call = new LifecycleCall();
+        Future<T> future = getLifecycleExecutor().submit(() -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                return callAsLifecycleTask(task, call);
+            } finally {
+                finished.complete(null);
+            }
+        });
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            // The task keeps running without the lifecycle lock once this thread stops waiting for it
+            call.abandon();
+            future.cancel(true);
+            if (claimed.compareAndSet(false, true)) {
+                finished.complete(null);
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Run the given task and mark the current thread as lifecycle task of the given call while it runs
+     *
+     * @param task Task that creates, enables or disables a plugin
+     * @param call Lifecycle call that the holder of the lifecycle lock waits for
+     * @param <T>  Result type of the task
+     * @return Result of the task
+     * @throws Exception Exception of the task
+     */
+    private <T> T callAsLifecycleTask(Callable<T> task, LifecycleCall call) throws Exception {
+        LifecycleCall previous = this.lifecycleTask.get();
+        this.lifecycleTask.set(call);
+        try {
+            return task.call();
+        } finally {
+            if (previous == null) {
+                this.lifecycleTask.remove();
+            } else {
+                this.lifecycleTask.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Activate the given lazy plugin exactly once while holding the lifecycle lock.
+     * Lifecycle tasks don't take the lock as long as the thread that holds it waits for them.
+     * A task that timed out takes the lock like any other thread.
+     *
+     * @param lazyPlugin Lazy plugin to activate
+     * @param onDemand   True if the plugin is used after the startup, false if a loading plugin needs it
+     * @return The activated plugin or null if the plugin failed to activate
+     */
+    private Plugin activateLazyPlugin(LazyPlugin lazyPlugin, boolean onDemand) {
+        LifecycleCall call = this.lifecycleTask.get();
+        if (call != null) {
+            // The waiting thread can't give up on the call and release the lock during the activation
+            synchronized (call) {
+                if (call.awaited) {
+                    return enableLazyPlugin(lazyPlugin, onDemand);
+                }
+            }
+        }
+        synchronized (this.lifecycleLock) {
+            return enableLazyPlugin(lazyPlugin, onDemand);
+        }
+    }
+
+    /**
+     * Activate the given lazy plugin exactly once.
+     * Lazy depending plugins are activated first.
+     *
+     * @param lazyPlugin Lazy plugin to activate
+     * @param onDemand   True to count the activation time as time saved during the startup
+     * @return The activated plugin or null if the plugin failed to activate
+     */
+    private Plugin enableLazyPlugin(LazyPlugin lazyPlugin, boolean onDemand) {
+        synchronized (lazyPlugin) {
+            PluginMeta meta = lazyPlugin.dependingPlugin.getMeta();
+            if (lazyPlugin.activated) {
+                return this.plugins.get(meta.getName());
+            }
+
+            // The lazy plugin may have been unloaded or replaced by a reload in the meantime
+            if (this.lazyPlugins.get(meta.getName()) != lazyPlugin) {
+                return this.plugins.get(meta.getName());
+            }
+            if (!isReadyToLoad(lazyPlugin.dependingPlugin)) {
+                this.logger.log("Lazy plugin " + meta.getName() + " can't be activated because a depending plugin is not loaded");
+                return null;
+            }
+            lazyPlugin.activated = true;
+
+            long start = System.nanoTime();
+            PluginResult result;
+            try {
+                PluginClassLoader classLoader = createClassLoader(meta, lazyPlugin.dependingPlugin.getFile());
+                result = registerEnabledPlugin(enablePlugin(lazyPlugin.dependingPlugin, classLoader));
+            } catch (PluginVerificationException e) {
+                result = new PluginResult(meta.getName(), lazyPlugin.dependingPlugin.getFile(), PluginResult.Status.VERIFICATION_FAILED, null, e);
+            } catch (Exception e) {
+                e.printStackTrace();
+                this.logger.log("Error while activating plugin " + meta.getName() + ": " + e.getMessage());
+                result = new PluginResult(meta.getName(), lazyPlugin.dependingPlugin.getFile(), PluginResult.Status.FAILED, null, e);
+            }
+
+            // The plugin is registered before the lazy entry is removed to keep it visible all the time
+            this.lazyPlugins.remove(meta.getName(), lazyPlugin);
+            invalidateLookupCaches();
+
+            if (onDemand && result.getStatus() == PluginResult.Status.LOADED) {
+                long duration = System.nanoTime() - start;
+                this.lazyActivationNanos.addAndGet(duration);
+                this.logger.log("Activated lazy plugin " + meta.getName() + " in "
+                        + TimeUnit.NANOSECONDS.toMillis(duration) + "ms that were saved during the startup");
+            }
+            return result.getPlugin();
+        }
+    }
+
+    /**
+     * Forget the absent class and resource names of all plugin class loaders after the loaded plugins changed
+     */
+    private void invalidateLookupCaches() {
+        for (Plugin plugin : this.plugins.values()) {
+            ((PluginClassLoader) plugin.getClass().getClassLoader()).invalidateLookupCaches();
+        }
+    }
+
+    /**
+     * Create plugin class loader that delegates to the class loaders of all depending plugins
+     *
+     * @param meta Plugin meta information from the json
+     * @param file Plugin jar file
+     * @return Plugin class loader
+     * @throws Exception Exception during class loader instantiation
+     */
+    private PluginClassLoader createClassLoader(PluginMeta meta, File file) throws Exception {
+        List<PluginClassLoader> dependencies = new ArrayList<>();
+        String[] depends = meta.getDepends();
+        if (depends != null) {
+            for (String depend : depends) {
+                // Activates lazy dependencies
+                Plugin dependency = getPlugin(depend, false);
+                if (dependency == null) {
+                    IllegalStateException exception = new IllegalStateException("Depending plugin " + depend + " of " + meta.getName() + " is not available");
+                    firePhaseFailed(meta.getName(), file, LifecyclePhase.CLASS_LOADER_CREATION, exception);
+                    throw exception;
+                }
+                dependencies.add((PluginClassLoader) dependency.getClass().getClassLoader());
+            }
+        }
+
+        File dataFolder = new File(this.directory, meta.getName());
+        long start = startTiming();
+        try {
+            PluginClassLoader classLoader = new PluginClassLoader(this.classLoader, dependencies, this.core, this, meta, dataFolder, file);
+            String jarDigest = null;
+            if (this.jarVerifier.isEnabled()) {
+                // The jar file may have been replaced since it was verified, so it is checked again once the class loader opened it
+                classLoader.openJarFile();
+                try {
+                    jarDigest = this.jarVerifier.checkUnchanged(file);
+                } catch (PluginVerificationException e) {
+                    this.logger.log(e.getMessage());
+                    classLoader.release();
+                    throw e;
+                }
+            }
+            if (this.classPreloadProfile != null) {
+                // The classes are recorded for the opened jar file, even if it is replaced on disk while the plugin runs
+                if (jarDigest == null) {
+                    classLoader.openJarFile();
+                    try {
+                        jarDigest = this.jarVerifier.digest(file);
+                    } catch (IOException e) {
+                        this.logger.log("Could not hash jar file of plugin " + meta.getName() + ": " + e.getMessage());
+                    }
+                }
+                if (jarDigest != null) {
+                    classLoader.recordClasses(jarDigest);
+                }
+            }
+            firePhaseCompleted(meta.getName(), file, LifecyclePhase.CLASS_LOADER_CREATION, start);
+            return classLoader;
+        } catch (IOException e) {
+            firePhaseFailed(meta.getName(), file, LifecyclePhase.CLASS_LOADER_CREATION, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Preload the classes the given plugin loaded during previous runs with the same jar file.
+     * The classes are loaded and linked in parallel in the background, and initialized if enabled.
+     *
+     * @param plugin The enabled plugin
+     */
+    private void preloadClasses(Plugin plugin) {
+        ClassPreloadProfile profile = this.classPreloadProfile;
+        ExecutorService executor = this.preloadExecutor;
+        String name = plugin.getPluginInfo().getName();
+        PluginClassLoader classLoader = (PluginClassLoader) plugin.getClass().getClassLoader();
+        String jarDigest = classLoader.getRecordedJarDigest();
+        if (jarDigest == null) {
+            return;
+        }
+        boolean initialize = this.classPreloadInitialization;
+
+        CompletableFuture.runAsync(() -> {
+            List<String> classes = profile.getClasses(name, jarDigest);
+            if (classes == null || classes.isEmpty()) {
+                return;
+            }
+
+            // Split the classes into one chunk per preload thread
+            long start = System.nanoTime();
+            int chunks = Math.min(classes.size(), Runtime.getRuntime().availableProcessors());
+            int chunkSize = (classes.size() + chunks - 1) / chunks;
+
+            List<CompletableFuture<Void>> futures = new ArrayList<>(chunks);
+            for (int from = 0; from < classes.size(); from += chunkSize) {
+                List<String> chunk = classes.subList(from, Math.min(classes.size(), from + chunkSize));
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (String className : chunk) {
+                        // Stop as soon as the plugin is unloaded
+                        if (this.plugins.get(name) != plugin) {
+                            return;
+                        }
+                        try {
+                            Class<?> clazz = Class.forName(className, initialize, classLoader);
+                            if (!initialize) {
+                                // Reflecting on the constructors links and verifies the class without initializing it
+                                clazz.getDeclaredConstructors();
+                            }
+                        } catch (ClassNotFoundException | LinkageError e) {
+                            // The class was removed or can't be loaded without its caller
+                        }
+                    }
+                }, executor));
+            }
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenRun(() -> this.logger.log("Preloaded "
+                    + classes.size() + " classes of plugin " + name + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms"));
+        }, executor);
+    }
+
+    /**
+     * Add the recorded classes of the given plugin to the class preload profile
+     *
+     * @param plugin Loaded or unloaded plugin
+     */
+    private void recordLoadedClasses(Plugin plugin) {
+        ClassPreloadProfile profile = this.classPreloadProfile;
+        PluginClassLoader classLoader = (PluginClassLoader) plugin.getClass().getClassLoader();
+        String jarDigest = classLoader.getRecordedJarDigest();
+        if (profile == null || jarDigest == null) {
+            return;
+        }
+
+        profile.update(plugin.getPluginInfo().getName(), jarDigest, classLoader.getRecordedClasses());
+    }
+
+    /**
+     * Write the classes that all loaded and unloaded plugins loaded so far to the class preload profile.
+     * Call this before the application shuts down, for example after the warmup or periodically.
+     *
+     * @throws IOException Exception while writing the profile file
+     */
+    public void saveClassPreloadProfile() throws IOException {
+        ClassPreloadProfile profile = this.classPreloadProfile;
+        if (profile == null) {
+            return;
+        }
+
+        for (Plugin plugin : this.plugins.values()) {
+            recordLoadedClasses(plugin);
+        }
+        profile.save();
+    }
+
+    /**
+     * Get the start time of a lifecycle phase
+     *
+     * @return Current time in nanoseconds or zero if no listener is registered
+     */
+    private long startTiming() {
+        return this.listeners.isEmpty() ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Report a finished lifecycle phase to all listeners
+     *
+     * @param pluginName Name of the plugin
+     * @param file       Plugin jar file
+     * @param phase      The finished phase
+     * @param start      Start time of the phase from {@link #startTiming()}
+     */
+    private void firePhaseCompleted(String pluginName, File file, LifecyclePhase phase, long start) {
+        // Phases that started before the first listener was registered are not reported
+        if (start == 0 || this.listeners.isEmpty()) {
+            return;
+        }
+
+        long duration = System.nanoTime() - start;
+        for (PluginLoaderListener listener : this.listeners) {
+            listener.onPhaseCompleted(pluginName, file, phase, duration);
+        }
+    }
+
+    /**
+     * Report a failed lifecycle phase to all listeners
+     *
+     * @param pluginName Name of the plugin or null if it is unknown
+     * @param file       Plugin jar file
+     * @param phase      The failed phase
+     * @param cause      Cause of the failure
+     */
+    private void firePhaseFailed(String pluginName, File file, LifecyclePhase phase, Throwable cause) {
+        for (PluginLoaderListener listener : this.listeners) {
+            listener.onPhaseFailed(pluginName, file, phase, cause);
+        }
+    }
+
+    /**
+     * Add a listener for the timings and failures of each plugin.
+     * The timings are only measured while at least one listener is registered.
+     *
+     * @param listener Listener to add
+     */
+    public void addListener(PluginLoaderListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener for the timings and failures of each plugin
+     *
+     * @param listener Listener to remove
+     */
+    public void removeListener(PluginLoaderListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Set the maximum amount of threads to open the jar files and parse the plugin meta files in parallel
+     *
+     * @param discoveryThreads Maximum amount of discovery threads
+     */
+    public void setDiscoveryThreads(int discoveryThreads) {
+        this.discoveryThreads = discoveryThreads;
+    }
+
+    /**
+     * Enable or disable the persistent plugin meta index in the plugin directory.
+     * Unchanged jar files are resolved from the index without opening them.
+     *
+     * @param indexEnabled True to use the index
+     */
+    public void setIndexEnabled(boolean indexEnabled) {
+        this.indexEnabled = indexEnabled;
+    }
+
+    /**
+     * Compare the SHA-256 digest of each jar file with the index in addition to its size and modification time.
+     * This detects changed jar files with the same size and modification time but reads every jar file completely.
+     *
+     * @param indexContentHash True to compare the content hash
+     */
+    public void setIndexContentHash(boolean indexContentHash) {
+        this.indexContentHash = indexContentHash;
+    }
+
+    /**
+     * Record the classes each plugin loads and preload them in the background after the plugin is enabled on the next startup.
+     * The preloaded classes are loaded and linked, which includes their bytecode verification, but not initialized
+     * unless {@link #setClassPreloadInitialization(boolean)} is enabled.
+     * The profile is stored in the plugin directory and the classes of a plugin are discarded as soon as its jar file changes.
+     * Use {@link #saveClassPreloadProfile()} to write the recorded classes. Must be set before the plugins are loaded.
+     *
+     * @param classPreloadEnabled True to record and preload the classes
+     */
+    public void setClassPreloadEnabled(boolean classPreloadEnabled) {
+        synchronized (this.lifecycleLock) {
+            if (!classPreloadEnabled) {
+                this.classPreloadProfile = null;
+                return;
+            }
+            if (this.classPreloadProfile != null) {
+                return;
+            }
+
+            if (this.preloadExecutor == null) {
+                this.preloadExecutor = VirtualThreads.newExecutor("PluginLoader-Preload",
+                        Runtime.getRuntime().availableProcessors(), false);
+            }
+            this.classPreloadProfile = ClassPreloadProfile.load(new File(this.directory, PRELOAD_PROFILE_FILE_NAME), this.logger);
+        }
+    }
+
+    /**
+     * Run the static initializers of the preloaded classes as well.
+     * The initializers of the plugins then run on the preload threads, in parallel to the plugins themselves.
+     * Only enable it if the static initializers of the plugins don't depend on the order in which classes are used.
+     *
+     * @param classPreloadInitialization True to initialize the preloaded classes
+     */
+    public void setClassPreloadInitialization(boolean classPreloadInitialization) {
+        this.classPreloadInitialization = classPreloadInitialization;
+    }
+
+    /**
+     * Set the executor to enable independent plugins in parallel.
+     * A plugin is only enabled after all of its depending plugins finished enabling.
+     * Use {@link VirtualThreads#newExecutor(String)} to enable the plugins on virtual threads where available.
+     * The logger is called from the executor threads while this mode is active.
+     *
+     * @param enableExecutor Executor to enable the plugins or null to enable them one by one on the calling thread
+     */
+    public void setEnableExecutor(ExecutorService enableExecutor) {
+        this.enableExecutor = enableExecutor;
+    }
+
+    /**
+     * Set the executor to disable independent plugins in parallel when plugins are unloaded or reloaded together.
+     * A plugin is only disabled after all plugins that depend on it finished disabling.
+     * The logger and the listeners are called from the executor threads while this mode is active.
+     *
+     * @param disableExecutor Executor to disable the plugins or null to disable them one by one on the calling thread
+     */
+    public void setDisableExecutor(ExecutorService disableExecutor) {
+        this.disableExecutor = disableExecutor;
+    }
+
+    /**
+     * Set the executor for the asynchronous lifecycle operations and for enabling or disabling plugins with a timeout.
+     * The executor must be able to run more than one task at a time if timeouts are used with the asynchronous operations.
+     * Uses virtual threads where available by default.
+     *
+     * @param lifecycleExecutor Executor for the lifecycle operations
+     */
+    public void setLifecycleExecutor(ExecutorService lifecycleExecutor) {
+        this.lifecycleExecutor = lifecycleExecutor;
+    }
+
+    /**
+     * Get the executor for the asynchronous lifecycle operations
+     *
+     * @return Lifecycle executor
+     */
+    private ExecutorService getLifecycleExecutor() {
+        return this.lifecycleExecutor;
+    }
+
+    /**
+     * Set the maximum time for a plugin to create its instance and finish {@link Plugin#onEnable()}.
+     * Plugins that do not finish in time are interrupted and not registered.
+     *
+     * @param timeout Maximum time or zero to wait endlessly
+     * @param unit    Unit of the timeout
+     */
+    public void setEnableTimeout(long timeout, TimeUnit unit) {
+        this.enableTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Set the maximum time for a plugin to finish {@link Plugin#onDisable()}.
+     * Plugins that do not finish in time are interrupted and unloaded anyway.
+     *
+     * @param timeout Maximum time or zero to wait endlessly
+     * @param unit    Unit of the timeout
+     */
+    public void setDisableTimeout(long timeout, TimeUnit unit) {
+        this.disableTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Set the default amount of threads of the plugin executors.
+     * Plugins can override it with the <code>threads</code> field of their plugin json.
+     *
+     * @param pluginThreads Amount of threads of each plugin executor, at least one
+     * @throws IllegalArgumentException If the amount of threads is less than one
+     */
+    public void setPluginThreads(int pluginThreads) {
+        if (pluginThreads < 1) {
+            throw new IllegalArgumentException("Invalid plugin thread count " + pluginThreads);
+        }
+        this.pluginThreads = pluginThreads;
+    }
+
+    /**
+     * Run the tasks of the plugin executors on virtual threads if the runtime supports them.
+     * The thread count of the plugins is ignored then.
+     *
+     * @param pluginVirtualThreads True to use virtual threads
+     */
+    public void setPluginVirtualThreads(boolean pluginVirtualThreads) {
+        this.pluginVirtualThreads = pluginVirtualThreads;
+    }
+
+    /**
+     * Set the maximum time for the tasks of an unloaded plugin to finish.
+     * Tasks that do not finish in time are interrupted.
+     *
+     * @param timeout Maximum time or zero to wait endlessly
+     * @param unit    Unit of the timeout
+     */
+    public void setSchedulerShutdownTimeout(long timeout, TimeUnit unit) {
+        this.schedulerShutdownTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Get the executor and scheduler of the given plugin. They are created on first use and shut down when the plugin is unloaded.
+     *
+     * @param plugin Loaded plugin
+     * @return Plugin scheduler
+     * @throws IllegalStateException If the plugin was already unloaded or is being unloaded
+     */
+    public PluginScheduler getScheduler(Plugin plugin) {
+        PluginMeta meta = plugin.getPluginInfo();
+        PluginClassLoader classLoader = (PluginClassLoader) plugin.getClass().getClassLoader();
+        return this.schedulers.computeIfAbsent(meta.getName(), name -> {
+            if (classLoader.getPlugin() != plugin || this.unloadingPlugins.contains(plugin)) {
+                throw new IllegalStateException("Plugin " + name + " is not loaded");
+            }
+            return new PluginScheduler(name, meta.getThreads() > 0 ? meta.getThreads() : this.pluginThreads, this.pluginVirtualThreads);
+        });
+    }
+
+    /**
+     * Get the executors and schedulers of all plugins that used them, with their task counts and CPU time
+     *
+     * @return Read-only view of the plugin schedulers by the plugin name
+     */
+    public Map<String, PluginScheduler> getSchedulers() {
+        return Collections.unmodifiableMap(this.schedulers);
+    }
+
+    /**
+     * Get the names of all lazy plugins that are registered but not activated yet
+     *
+     * @return Names of the lazy plugins that were not used yet
+     */
+    public Set<String> getDeferredPlugins() {
+        return Collections.unmodifiableSet(this.lazyPlugins.keySet());
+    }
+
+    /**
+     * Get the total time spent activating lazy plugins on first use.
+     * This time would have been spent during the startup without lazy activation.
+     * Lazy plugins that are never used save their whole activation time in addition.
+     *
+     * @param unit Unit of the returned time
+     * @return Time spent activating lazy plugins after the startup
+     */
+    public long getLazyActivationTime(TimeUnit unit) {
+        return unit.convert(this.lazyActivationNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the registry of services that the plugins provide to each other
+     *
+     * @return Service registry
+     */
+    public ServiceRegistry getServiceRegistry() {
+        return serviceRegistry;
+    }
+
+    /**
+     * Get the event bus that delivers events to the listeners of the plugins
+     *
+     * @return Event bus
+     */
+    public EventBus getEventBus() {
+        return eventBus;
+    }
+
+    /**
+     * Get the verifier of the plugin jar files.
+     * Set trusted digests or require signatures on it to verify each jar file before it is loaded.
+     *
+     * @return Jar verifier
+     */
+    public JarVerifier getJarVerifier() {
+        return jarVerifier;
+    }
+
+    /**
+     * Get the leak detector that tracks the class loaders of unloaded plugins
+     *
+     * @return Class loader leak detector
+     */
+    public ClassLoaderLeakDetector getLeakDetector() {
+        return leakDetector;
     }
 
     /**
@@ -261,4 +2072,108 @@ public class PluginLoader {
     public PluginLoaderLogger getLogger() {
         return logger;
     }
+
+    /**
+     * Lazy plugin that is registered but not activated yet
+     */
+    private static class LazyPlugin {
+
+        /**
+         * Plugin meta and jar file of the lazy plugin
+         */
+        private final DependingPlugin dependingPlugin;
+
+        /**
+         * True as soon as the activation started. Guarded by the lazy plugin instance.
+         */
+        private boolean activated;
+
+        /**
+         * Create lazy plugin
+         *
+         * @param dependingPlugin Plugin meta and jar file of the lazy plugin
+         */
+        private LazyPlugin(DependingPlugin dependingPlugin) {
+            this.dependingPlugin = dependingPlugin;
+        }
+    }
+
+    /**
+     * Plugin creation, enable or disable task that the holder of the lifecycle lock waits for
+     */
+    private static class LifecycleCall {
+
+        /**
+         * True while the holder of the lifecycle lock waits for the task. Guarded by the lifecycle call instance.
+         */
+        private boolean awaited = true;
+
+        /**
+         * Check if the holder of the lifecycle lock still waits for the task
+         *
+         * @return True if the task runs on behalf of the holder of the lifecycle lock
+         */
+        private synchronized boolean isAwaited() {
+            return this.awaited;
+        }
+
+        /**
+         * Stop waiting for the task after it timed out.
+         * Blocks until a lazy plugin activation of the task without the lifecycle lock is done.
+         */
+        private synchronized void abandon() {
+            this.awaited = false;
+        }
+    }
+
+    /**
+     * Size and modification time of a jar file, the same attributes the plugin index compares
+     */
+    private static class JarStamp {
+
+        /**
+         * Size of the jar file in bytes or zero if it does not exist
+         */
+        private final long size;
+
+        /**
+         * Last modification time of the jar file or zero if it does not exist
+         */
+        private final long lastModified;
+
+        /**
+         * Create jar stamp
+         *
+         * @param size         Size of the jar file in bytes
+         * @param lastModified Last modification time of the jar file
+         */
+        private JarStamp(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Read the current stamp of the given jar file
+         *
+         * @param jarFile Jar file
+         * @return Current size and modification time
+         */
+        private static JarStamp of(File jarFile) {
+            return new JarStamp(jarFile.length(), jarFile.lastModified());
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof JarStamp)) {
+                return false;
+            }
+            JarStamp stamp = (JarStamp) object;
+            return this.size == stamp.size && this.lastModified == stamp.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.size) * 31 + Long.hashCode(this.lastModified);
+        }
+    }
 }
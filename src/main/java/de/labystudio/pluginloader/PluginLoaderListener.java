@@ -0,0 +1,55 @@
+package de.labystudio.pluginloader;
+
+import de.labystudio.pluginloader.metrics.LifecyclePhase;
+import de.labystudio.pluginloader.plugin.Plugin;
+
+import java.io.File;
+
+/**
+ * Called from the plugin loader to report the timings and failures of each plugin.
+ * Methods may be called from the discovery, enable and lifecycle executor threads at the same time.
+ *
+ * @author LabyStudio
+ */
+public interface PluginLoaderListener {
+
+    /**
+     * Called after a lifecycle phase of a plugin finished successfully
+     *
+     * @param pluginName    Name of the plugin
+     * @param file          Plugin jar file
+     * @param phase         The finished phase
+     * @param durationNanos Duration of the phase in nanoseconds
+     */
+    default void onPhaseCompleted(String pluginName, File file, LifecyclePhase phase, long durationNanos) {
+    }
+
+    /**
+     * Called after a lifecycle phase of a plugin failed or timed out
+     *
+     * @param pluginName Name of the plugin or null if the plugin meta could not be read
+     * @param file       Plugin jar file
+     * @param phase      The failed phase
+     * @param cause      Cause of the failure
+     */
+    default void onPhaseFailed(String pluginName, File file, LifecyclePhase phase, Throwable cause) {
+    }
+
+    /**
+     * Called after a plugin was enabled and registered
+     *
+     * @param plugin         The loaded plugin
+     * @param definedClasses Amount of classes the plugin class loader defined so far
+     */
+    default void onPluginLoaded(Plugin plugin, int definedClasses) {
+    }
+
+    /**
+     * Called after a plugin was unloaded
+     *
+     * @param plugin         The unloaded plugin
+     * @param definedClasses Amount of classes the plugin class loader defined during its lifetime
+     */
+    default void onPluginUnloaded(Plugin plugin, int definedClasses) {
+    }
+}
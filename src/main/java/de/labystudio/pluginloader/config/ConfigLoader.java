@@ -2,10 +2,27 @@ package de.labystudio.pluginloader.config;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import de.labystudio.pluginloader.PluginLoaderLogger;
+import de.labystudio.pluginloader.util.NamedThreadFactory;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Json config loader
@@ -20,6 +37,27 @@ public class ConfigLoader<T> {
      */
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
+    /**
+     * Shared background thread that writes the saved configs of all config loaders
+     */
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("ConfigLoader-Writer"));
+
+    /**
+     * Config loaders with saved configs that are not written yet.
+     * The writer thread is a daemon thread, so they are written by a shutdown hook when the process exits.
+     */
+    private static final Set<ConfigLoader<?>> PENDING_LOADERS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Default time in milliseconds to collect changes before a saved config is written
+     */
+    private static final long DEFAULT_SAVE_DELAY_MILLIS = 100;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ConfigLoader::flushAll, "ConfigLoader-Shutdown"));
+    }
+
     /**
      * Config file location
      */
@@ -31,31 +69,170 @@ public class ConfigLoader<T> {
     private final Class<?> type;
 
     /**
-     * Create config loader
+     * Logger for failed background writes
+     */
+    private final PluginLoaderLogger logger;
+
+    /**
+     * Lock for reading and writing the config file
+     */
+    private final Object fileLock = new Object();
+
+    /**
+     * Latest saved config that is not written yet
+     */
+    private final AtomicReference<T> pendingConfig = new AtomicReference<>();
+
+    /**
+     * True while a background write is scheduled
+     */
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+    /**
+     * Content of the config file as it was last read or written. Guarded by the file lock.
+     */
+    private byte[] content;
+
+    /**
+     * Time in milliseconds to collect changes before a saved config is written
+     */
+    private volatile long saveDelayMillis = DEFAULT_SAVE_DELAY_MILLIS;
+
+    /**
+     * Create config loader that does not report failed background writes.
+     * Use {@link #ConfigLoader(File, Class, PluginLoaderLogger)} to log them.
      *
      * @param file Config file location
      * @param type Storage class type
      */
     public ConfigLoader(File file, Class<?> type) {
+        this(file, type, message -> {
+        });
+    }
+
+    /**
+     * Create config loader
+     *
+     * @param file   Config file location
+     * @param type   Storage class type
+     * @param logger Logger for failed background writes
+     */
+    public ConfigLoader(File file, Class<?> type, PluginLoaderLogger logger) {
         this.file = file;
         this.type = type;
+        this.logger = logger;
     }
 
     /**
      * Load config file.
-     * It will create a new file with default values if it does not exists
+     * It will create a new file with default values if it does not exists.
+     * The file is only written if the content changed, for example because of new default values.
      *
      * @return The storage class
      */
     public T load() throws Exception {
-        T config;
-        if (this.file.exists()) {
-            config = read();
-        } else {
-            config = (T) this.type.getConstructor().newInstance();
+        synchronized (this.fileLock) {
+            T config;
+            if (this.file.exists()) {
+                config = read();
+            } else {
+                config = (T) this.type.getConstructor().newInstance();
+            }
+            write(config);
+            return config;
+        }
+    }
+
+    /**
+     * Read the config file again without writing it back.
+     *
+     * @return The storage class or null if the content did not change since it was last read or written
+     * @throws Exception Exception while reading the file or if the file contains no config, for example while it is written
+     */
+    T reload() throws Exception {
+        synchronized (this.fileLock) {
+            byte[] content = Files.readAllBytes(this.file.toPath());
+            if (Arrays.equals(content, this.content)) {
+                return null;
+            }
+
+            T config = parse(content);
+            if (config == null) {
+                throw new IOException("No config in " + this.file.getName());
+            }
+            this.content = content;
+            return config;
+        }
+    }
+
+    /**
+     * Write the given config immediately.
+     * A pending background save is replaced by the given config.
+     *
+     * @param config Storage class
+     * @throws IOException Exception while writing the file
+     */
+    public void saveNow(T config) throws IOException {
+        synchronized (this.fileLock) {
+            // Saves that arrive meanwhile are newer and stay pending
+            this.pendingConfig.set(null);
+            write(config);
+        }
+    }
+
+    /**
+     * Save the given config on the background writer.
+     * Multiple saves within the save delay are written only once with the latest config.
+     * The config is serialized when it is written, so it should not be modified from other threads meanwhile.
+     *
+     * @param config Storage class
+     */
+    public void save(T config) {
+        this.pendingConfig.set(config);
+        PENDING_LOADERS.add(this);
+        if (this.writeScheduled.compareAndSet(false, true)) {
+            WRITER.schedule(this::writePending, this.saveDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write the pending saved config immediately.
+     * Call this before the plugin is disabled, pending saves are otherwise only written when the process exits.
+     *
+     * @throws IOException Exception while writing the file
+     */
+    public void flush() throws IOException {
+        // The config is taken under the file lock, so an older config can't be written after a newer one
+        synchronized (this.fileLock) {
+            T config = this.pendingConfig.getAndSet(null);
+            if (config != null) {
+                write(config);
+            }
+        }
+    }
+
+    /**
+     * Write the pending saved config on the background writer
+     */
+    private void writePending() {
+        // Saves from now on schedule a new write
+        this.writeScheduled.set(false);
+
+        PENDING_LOADERS.remove(this);
+        try {
+            flush();
+        } catch (IOException e) {
+            this.logger.log("Could not write config " + this.file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write the pending saved configs of all config loaders
+     */
+    private static void flushAll() {
+        for (ConfigLoader<?> configLoader : PENDING_LOADERS) {
+            configLoader.writePending();
         }
-        write(config);
-        return config;
     }
 
     /**
@@ -64,22 +241,83 @@ public class ConfigLoader<T> {
      * @return Storage class
      */
     private T read() throws Exception {
-        FileReader fileReader = new FileReader(this.file);
-        T config = (T) GSON.fromJson(fileReader, this.type);
-        fileReader.close();
-        return config;
+        byte[] content = Files.readAllBytes(this.file.toPath());
+        this.content = content;
+
+        return parse(content);
+    }
+
+    /**
+     * Deserialize the json content
+     *
+     * @param content Json content
+     * @return Storage class or null if the content is empty
+     */
+    private T parse(byte[] content) {
+        return (T) GSON.fromJson(new String(content, StandardCharsets.UTF_8), this.type);
     }
 
     /**
-     * Write storage class to json
+     * Create a deep copy of the given config through its json form
+     *
+     * @param config Storage class or null
+     * @return Independent copy of the config or null
+     */
+    T copy(T config) {
+        return config == null ? null : parse(GSON.toJson(config).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write storage class to json through a temporary file that atomically replaces the config file.
+     * Nothing is written if the content did not change. Requires the file lock.
      *
      * @param config Storage class
      */
-    private void write(T config) throws Exception {
-        FileWriter fileWriter = new FileWriter(this.file);
-        GSON.toJson(config, fileWriter);
-        fileWriter.flush();
-        fileWriter.close();
+    private void write(T config) throws IOException {
+        byte[] content = GSON.toJson(config).getBytes(StandardCharsets.UTF_8);
+        if (Arrays.equals(content, this.content)) {
+            return;
+        }
+
+        Path target = this.file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            // The content must be on the disk before it replaces the old file
+            channel.force(false);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        this.content = content;
+    }
+
+    /**
+     * Get the content of the config file as it was last read or written
+     *
+     * @return Json content or null if the file was not read or written yet
+     */
+    byte[] getContent() {
+        synchronized (this.fileLock) {
+            return this.content;
+        }
+    }
+
+    /**
+     * Set the time to collect changes before a saved config is written
+     *
+     * @param delay Delay before the background write
+     * @param unit  Unit of the delay
+     */
+    public void setSaveDelay(long delay, TimeUnit unit) {
+        this.saveDelayMillis = unit.toMillis(delay);
     }
 
 }
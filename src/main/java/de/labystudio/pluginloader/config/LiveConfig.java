@@ -0,0 +1,194 @@
+package de.labystudio.pluginloader.config;
+
+import de.labystudio.pluginloader.PluginLoaderLogger;
+import de.labystudio.pluginloader.util.DirectoryWatcher;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Json config that is reloaded whenever the config file changes.
+ * Every reload publishes a new config instance, so readers always see a consistent snapshot
+ * with a single volatile read and without locking.
+ * The published instance is never handed out, readers, validators and listeners receive copies of it.
+ *
+ * @param <T> Storage class
+ * @author LabyStudio
+ */
+public class LiveConfig<T> implements Closeable {
+
+    /**
+     * Config loader to read and write the config file
+     */
+    private final ConfigLoader<T> configLoader;
+
+    /**
+     * Config file location
+     */
+    private final Path file;
+
+    /**
+     * Accepts a loaded config before it is published. Rejected configs keep the previous snapshot.
+     */
+    private final Predicate<T> validator;
+
+    /**
+     * Logger for failed reloads and listeners
+     */
+    private final PluginLoaderLogger logger;
+
+    /**
+     * Listeners that are called with copies of the previous and the new snapshot after each published change
+     */
+    private final List<BiConsumer<T, T>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Current config snapshot, only copies of it leave this class
+     */
+    private volatile T snapshot;
+
+    /**
+     * Watches the directory of the config file. Null if the file is not watched.
+     */
+    private DirectoryWatcher directoryWatcher;
+
+    /**
+     * Create live config. Call {@link #start(long)} to load the config and start watching the file.
+     *
+     * @param file      Config file location
+     * @param type      Storage class type
+     * @param validator Accepts a copy of a loaded config before it is published
+     * @param logger    Logger for failed reloads and listeners
+     */
+    public LiveConfig(File file, Class<?> type, Predicate<T> validator, PluginLoaderLogger logger) {
+        this.configLoader = new ConfigLoader<>(file, type, logger);
+        this.file = file.getAbsoluteFile().toPath();
+        this.validator = validator;
+        this.logger = logger;
+    }
+
+    /**
+     * Load the config and start watching the config file
+     *
+     * @param debounceMillis Time without changes in milliseconds before the config file is read again
+     * @throws Exception Exception while loading the config or if the config is invalid
+     */
+    public synchronized void start(long debounceMillis) throws Exception {
+        if (this.directoryWatcher != null) {
+            return;
+        }
+
+        T config = this.configLoader.load();
+        if (!this.validator.test(this.configLoader.copy(config))) {
+            throw new IllegalStateException("Invalid config in " + this.file.getFileName());
+        }
+        this.snapshot = config;
+
+        this.directoryWatcher = new DirectoryWatcher(this.file.getParent(), debounceMillis,
+                "LiveConfig-" + this.file.getFileName(), this::onDirectoryChanged);
+        this.directoryWatcher.start();
+    }
+
+    /**
+     * Reload the config if the config file changed
+     *
+     * @param changedPaths Changed paths in the directory or the directory itself if all files may have changed
+     */
+    private void onDirectoryChanged(Set<Path> changedPaths) {
+        if (changedPaths.contains(this.file) || changedPaths.contains(this.file.getParent())) {
+            reload();
+        }
+    }
+
+    /**
+     * Read the config file again and publish the config if it changed and is valid.
+     * The file is never written by a reload.
+     * The previous snapshot stays active if the file can't be parsed or the config is rejected by the validator.
+     *
+     * @return True if a new snapshot was published
+     */
+    public synchronized boolean reload() {
+        T config;
+        try {
+            config = this.configLoader.reload();
+
+            // Our own writes and touched files without changes publish nothing
+            if (config == null || !this.validator.test(this.configLoader.copy(config))) {
+                return false;
+            }
+        } catch (Exception e) {
+            this.logger.log("Could not reload config " + this.file.getFileName() + ": " + e);
+            return false;
+        }
+
+        T previous = this.snapshot;
+        this.snapshot = config;
+
+        for (BiConsumer<T, T> listener : this.listeners) {
+            try {
+                listener.accept(this.configLoader.copy(previous), this.configLoader.copy(config));
+            } catch (Throwable e) {
+                this.logger.log("Error in config listener of " + this.file.getFileName() + ": " + e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get a copy of the current config snapshot. Never blocks.
+     * Changes to the returned config are not published, keep the copy instead of calling this for each value.
+     *
+     * @return Copy of the current config or null if the config was not started yet
+     */
+    public T get() {
+        return this.configLoader.copy(this.snapshot);
+    }
+
+    /**
+     * Add a listener that is called with copies of the previous and the new snapshot after each published change.
+     * Listeners are called on the watcher thread.
+     *
+     * @param listener Listener to add
+     */
+    public void addListener(BiConsumer<T, T> listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Remove a change listener
+     *
+     * @param listener Listener to remove
+     */
+    public void removeListener(BiConsumer<T, T> listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Get the config loader of the config file
+     *
+     * @return Config loader
+     */
+    public ConfigLoader<T> getConfigLoader() {
+        return configLoader;
+    }
+
+    /**
+     * Stop watching the config file. The current snapshot stays available.
+     *
+     * @throws IOException Exception while closing the watch service
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.directoryWatcher != null) {
+            this.directoryWatcher.close();
+            this.directoryWatcher = null;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package de.labystudio.pluginloader.event;
+
+import de.labystudio.pluginloader.PluginLoaderLogger;
+import de.labystudio.pluginloader.plugin.Plugin;
+import de.labystudio.pluginloader.plugin.PluginClassLoader;
+import de.labystudio.pluginloader.util.VirtualThreads;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Delivers events to the handlers that plugins registered.
+ * The handlers of each event type are kept in arrays sorted by priority that are replaced on each registration,
+ * so posting an event never locks and never calls handlers through reflection.
+ * All listeners of a plugin are removed automatically when the plugin is unloaded.
+ *
+ * @author LabyStudio
+ */
+public class EventBus {
+
+    /**
+     * Order of the handlers, highest priority first and then in registration order
+     */
+    private static final Comparator<RegisteredListener> ORDER = Comparator
+            .comparingInt((RegisteredListener listener) -> listener.getPriority()).reversed()
+            .thenComparingLong(RegisteredListener::getSequence);
+
+    /**
+     * Empty handler array for event types without handlers
+     */
+    private static final RegisteredListener[] NO_LISTENERS = new RegisteredListener[0];
+
+    /**
+     * Logger to report exceptions of the handlers
+     */
+    private final PluginLoaderLogger logger;
+
+    /**
+     * Handlers by the event type they declared. Guarded by the event bus.
+     */
+    private final Map<Class<?>, RegisteredListener[]> listeners = new HashMap<>();
+
+    /**
+     * Handlers of all supertypes by the posted event class. Cleared whenever the handlers change.
+     */
+    private final Map<Class<?>, RegisteredListener[]> dispatchCache = new ConcurrentHashMap<>();
+
+    /**
+     * Amount of registered handlers so far. Guarded by the event bus.
+     */
+    private long sequence;
+
+    /**
+     * Creates the executors of the handler methods
+     */
+    private final EventExecutorFactory executorFactory;
+
+    /**
+     * Executor to deliver events asynchronously. Created on first use.
+     */
+    private volatile ExecutorService asyncExecutor;
+
+    /**
+     * True if the async executor was created by the event bus and is stopped by {@link #shutdown()}. Guarded by the event bus.
+     */
+    private boolean asyncExecutorCreated;
+
+    /**
+     * True after {@link #shutdown()} was called
+     */
+    private volatile boolean shutdown;
+
+    /**
+     * Create event bus
+     *
+     * @param logger Logger to report exceptions of the handlers
+     */
+    public EventBus(PluginLoaderLogger logger) {
+        this.logger = logger;
+        this.executorFactory = new EventExecutorFactory(logger);
+    }
+
+    /**
+     * Register all {@link Subscribe} methods of the given listener.
+     * The handlers are called through method handles, use {@link #register(Plugin, Object, MethodHandles.Lookup)}
+     * to compile them into direct calls.
+     *
+     * @param owner    Plugin that owns the listener or null for listeners of the core
+     * @param listener Listener with handler methods
+     */
+    public void register(Plugin owner, Object listener) {
+        register(owner, listener, null);
+    }
+
+    /**
+     * Register all {@link Subscribe} methods of the given listener.
+     * The lookup allows to generate a direct call site for each handler in the class loader of the plugin.
+     * Pass <code>MethodHandles.lookup()</code> from any class of the plugin.
+     *
+     * @param owner    Plugin that owns the listener or null for listeners of the core
+     * @param listener Listener with handler methods
+     * @param lookup   Lookup created by a class of the plugin or null to call the handlers through method handles
+     */
+    public void register(Plugin owner, Object listener, MethodHandles.Lookup lookup) {
+        List<Method> methods = new ArrayList<>();
+        for (Class<?> type = listener.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Subscribe.class)) {
+                    methods.add(method);
+                }
+            }
+        }
+
+        // Create the executors before registering anything, so an invalid handler registers nothing
+        List<EventExecutor> executors = new ArrayList<>(methods.size());
+        for (Method method : methods) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() != void.class
+                    || parameterTypes.length != 1 || parameterTypes[0].isPrimitive()) {
+                throw new IllegalArgumentException("Invalid event handler " + method + ", it must be a non-static void method with the event as its only parameter");
+            }
+
+            try {
+                executors.add(this.executorFactory.create(method, lookup));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Event handler " + method + " is not accessible", e);
+            }
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < methods.size(); i++) {
+                Method method = methods.get(i);
+                add(new RegisteredListener(owner, listener, method.getParameterTypes()[0], executors.get(i),
+                        method.getAnnotation(Subscribe.class).priority(), this.sequence++));
+            }
+            this.dispatchCache.clear();
+        }
+    }
+
+    /**
+     * Register a single handler for the given event type
+     *
+     * @param owner     Plugin that owns the handler or null for handlers of the core
+     * @param eventType Type of the handled events
+     * @param priority  Priority of the handler. Higher priorities are called first.
+     * @param handler   Handler to call, also used to unregister it
+     * @param <E>       Event type
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <E> void subscribe(Plugin owner, Class<E> eventType, int priority, Consumer<? super E> handler) {
+        EventExecutor executor = (listener, event) -> ((Consumer<Object>) listener).accept(event);
+        add(new RegisteredListener(owner, handler, eventType, executor, priority, this.sequence++));
+        this.dispatchCache.clear();
+    }
+
+    /**
+     * Add a handler to the sorted handlers of its event type. Requires the event bus lock.
+     *
+     * @param listener Handler to add
+     */
+    private void add(RegisteredListener listener) {
+        RegisteredListener[] previous = this.listeners.getOrDefault(listener.getEventType(), NO_LISTENERS);
+        RegisteredListener[] listeners = Arrays.copyOf(previous, previous.length + 1);
+        listeners[previous.length] = listener;
+        Arrays.sort(listeners, ORDER);
+        this.listeners.put(listener.getEventType(), listeners);
+    }
+
+    /**
+     * Remove all handlers of the given listener
+     *
+     * @param listener Listener or handler to remove
+     */
+    public synchronized void unregister(Object listener) {
+        removeIf(registered -> registered.getListener() == listener);
+    }
+
+    /**
+     * Remove all listeners of the given plugin.
+     * Called by the plugin loader when the plugin is unloaded.
+     *
+     * @param owner Unloaded plugin
+     */
+    public synchronized void unregisterAll(Plugin owner) {
+        removeIf(registered -> registered.getOwner() == owner);
+
+        // Event types of the plugin itself would keep its class loader alive
+        ClassLoader classLoader = owner.getClass().getClassLoader();
+        if (classLoader instanceof PluginClassLoader) {
+            this.listeners.keySet().removeIf(type -> type.getClassLoader() == classLoader);
+        }
+    }
+
+    /**
+     * Remove all handlers that match the given filter. Requires the event bus lock.
+     *
+     * @param filter Filter of the handlers to remove
+     */
+    private void removeIf(Predicate<RegisteredListener> filter) {
+        Map<Class<?>, RegisteredListener[]> changed = new HashMap<>();
+        for (Map.Entry<Class<?>, RegisteredListener[]> entry : this.listeners.entrySet()) {
+            RegisteredListener[] listeners = entry.getValue();
+            RegisteredListener[] remaining = Arrays.stream(listeners)
+                    .filter(filter.negate())
+                    .toArray(RegisteredListener[]::new);
+            if (remaining.length != listeners.length) {
+                changed.put(entry.getKey(), remaining);
+            }
+        }
+
+        for (Map.Entry<Class<?>, RegisteredListener[]> entry : changed.entrySet()) {
+            if (entry.getValue().length == 0) {
+                this.listeners.remove(entry.getKey());
+            } else {
+                this.listeners.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        // Posted event classes may belong to an unloaded plugin as well
+        this.dispatchCache.clear();
+    }
+
+    /**
+     * Deliver the event to all handlers of its class and supertypes on the calling thread.
+     * Exceptions of a handler are logged and don't stop the delivery to the remaining handlers.
+     *
+     * @param event Event to post
+     * @param <E>   Event type
+     * @return The posted event
+     */
+    public <E> E post(E event) {
+        for (RegisteredListener listener : getListeners(event.getClass())) {
+            try {
+                listener.execute(event);
+            } catch (Throwable e) {
+                Plugin owner = listener.getOwner();
+                this.logger.log("Error while handling " + event.getClass().getSimpleName()
+                        + (owner == null ? "" : " in plugin " + owner.getPluginInfo().getName()) + ": " + e);
+            }
+        }
+        return event;
+    }
+
+    /**
+     * Deliver the event to all handlers on the async executor.
+     * The handlers are called one after another in the order of their priority.
+     *
+     * @param event Event to post
+     * @param <E>   Event type
+     * @return Future that completes with the event after all handlers were called
+     * @throws RejectedExecutionException If the event bus was shut down
+     */
+    public <E> CompletableFuture<E> postAsync(E event) {
+        return CompletableFuture.supplyAsync(() -> post(event), getAsyncExecutor());
+    }
+
+    /**
+     * Check if any handler receives events of the given class.
+     * Allows to skip creating events nobody listens to.
+     *
+     * @param eventClass Class of the event
+     * @return True if there is at least one handler
+     */
+    public boolean hasListeners(Class<?> eventClass) {
+        return getListeners(eventClass).length != 0;
+    }
+
+    /**
+     * Get all handlers of the given event class and its supertypes in the order they are called
+     *
+     * @param eventClass Class of the posted event
+     * @return Sorted handlers
+     */
+    private RegisteredListener[] getListeners(Class<?> eventClass) {
+        RegisteredListener[] listeners = this.dispatchCache.get(eventClass);
+        if (listeners != null) {
+            return listeners;
+        }
+
+        synchronized (this) {
+            listeners = this.dispatchCache.get(eventClass);
+            if (listeners == null) {
+                List<RegisteredListener> collected = new ArrayList<>();
+                for (Class<?> type : getTypeHierarchy(eventClass)) {
+                    collected.addAll(Arrays.asList(this.listeners.getOrDefault(type, NO_LISTENERS)));
+                }
+                collected.sort(ORDER);
+
+                listeners = collected.isEmpty() ? NO_LISTENERS : collected.toArray(NO_LISTENERS);
+                this.dispatchCache.put(eventClass, listeners);
+            }
+            return listeners;
+        }
+    }
+
+    /**
+     * Get the given class and all of its superclasses and interfaces
+     *
+     * @param eventClass Class of the posted event
+     * @return All types an event of the class is an instance of
+     */
+    private static Set<Class<?>> getTypeHierarchy(Class<?> eventClass) {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        queue.add(eventClass);
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.poll();
+            if (types.add(type)) {
+                if (type.getSuperclass() != null) {
+                    queue.add(type.getSuperclass());
+                }
+                queue.addAll(Arrays.asList(type.getInterfaces()));
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Get the executor to deliver events asynchronously.
+     * Uses virtual threads where available by default.
+     *
+     * @return Async executor
+     */
+    private ExecutorService getAsyncExecutor() {
+        if (this.shutdown) {
+            throw new RejectedExecutionException("The event bus was shut down");
+        }
+
+        ExecutorService executor = this.asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (this.shutdown) {
+                    throw new RejectedExecutionException("The event bus was shut down");
+                }
+                executor = this.asyncExecutor;
+                if (executor == null) {
+                    executor = this.asyncExecutor = VirtualThreads.newExecutor("EventBus-Async");
+                    this.asyncExecutorCreated = true;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Set the executor to deliver events asynchronously.
+     * The executor is owned by the caller and not stopped by {@link #shutdown()}.
+     *
+     * @param asyncExecutor Executor for {@link #postAsync(Object)}
+     */
+    public synchronized void setAsyncExecutor(ExecutorService asyncExecutor) {
+        if (this.asyncExecutorCreated) {
+            this.asyncExecutor.shutdown();
+            this.asyncExecutorCreated = false;
+        }
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Stop the async executor if the event bus created it. Events that are delivered right now are completed.
+     * Events can't be posted asynchronously anymore afterwards, {@link #post(Object)} keeps working.
+     */
+    public synchronized void shutdown() {
+        this.shutdown = true;
+        if (this.asyncExecutorCreated) {
+            this.asyncExecutor.shutdown();
+            this.asyncExecutorCreated = false;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package de.labystudio.pluginloader.event;
+
+/**
+ * Calls an event handler of a listener.
+ * Implementations are generated for each handler method to call it directly.
+ *
+ * @author LabyStudio
+ */
+@FunctionalInterface
+public interface EventExecutor {
+
+    /**
+     * Pass the event to the handler
+     *
+     * @param listener Listener that declares the handler
+     * @param event    Event to handle
+     * @throws Throwable Exception of the handler
+     */
+    void execute(Object listener, Object event) throws Throwable;
+}
@@ -0,0 +1,132 @@
+package de.labystudio.pluginloader.event;
+
+import de.labystudio.pluginloader.PluginLoaderLogger;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Creates the event executors of handler methods.
+ * With a lookup of the plugin the handler is compiled into a direct call site,
+ * otherwise it is called through a method handle.
+ *
+ * @author LabyStudio
+ */
+class EventExecutorFactory {
+
+    /**
+     * Signature of {@link EventExecutor#execute(Object, Object)}
+     */
+    private static final MethodType EXECUTE_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * Signature of the factory of a generated executor
+     */
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(EventExecutor.class);
+
+    /**
+     * Lookup of the event bus to create method handles without a lookup of the plugin
+     */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * MethodHandles.privateLookupIn(Class, Lookup). Null if the runtime does not support it.
+     */
+    private static final Method PRIVATE_LOOKUP_IN = findPrivateLookupIn();
+
+    /**
+     * Logger to report the first handler that can't be compiled into a direct call site
+     */
+    private final PluginLoaderLogger logger;
+
+    /**
+     * True as soon as a fallback to a method handle was logged
+     */
+    private final AtomicBoolean fallbackLogged = new AtomicBoolean();
+
+    /**
+     * Create event executor factory
+     *
+     * @param logger Logger to report the first handler that can't be compiled into a direct call site
+     */
+    EventExecutorFactory(PluginLoaderLogger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Create the executor of the given handler method
+     *
+     * @param method Handler method
+     * @param lookup Lookup created by a class of the plugin that declares the handler or null if not available
+     * @return Executor that calls the handler method
+     * @throws IllegalAccessException If the handler method is not accessible
+     */
+    EventExecutor create(Method method, MethodHandles.Lookup lookup) throws IllegalAccessException {
+        if (lookup != null) {
+            try {
+                return generate(method, lookup);
+            } catch (ReflectiveOperationException | LambdaConversionException | IllegalArgumentException e) {
+                // Fall through to a method handle, for example if the lookup belongs to another class loader
+                if (this.fallbackLogged.compareAndSet(false, true)) {
+                    Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+                    this.logger.log("Could not compile event handler " + method + ", calling it through a method handle: " + cause);
+                }
+            }
+        }
+
+        method.setAccessible(true);
+        MethodHandle handle = LOOKUP.unreflect(method).asType(EXECUTE_TYPE);
+        return (listener, event) -> {
+            // Must be a statement, so the exact invocation has the void return type
+            handle.invokeExact(listener, event);
+        };
+    }
+
+    /**
+     * Generate a class that implements the executor and calls the handler method directly.
+     * The class is defined in the class loader of the plugin, so it is unloaded together with the plugin.
+     *
+     * @param method Handler method
+     * @param lookup Lookup created by a class of the plugin that declares the handler
+     * @return Generated executor
+     * @throws ReflectiveOperationException If the lookup has no access to the handler method
+     * @throws LambdaConversionException    If the handler can't be bound to the executor interface
+     */
+    private static EventExecutor generate(Method method, MethodHandles.Lookup lookup) throws ReflectiveOperationException, LambdaConversionException {
+        MethodHandles.Lookup caller = lookup;
+        if (PRIVATE_LOOKUP_IN != null) {
+            caller = (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invoke(null, method.getDeclaringClass(), lookup);
+        }
+
+        MethodHandle target = caller.unreflect(method);
+        CallSite callSite = LambdaMetafactory.metafactory(caller, "execute", FACTORY_TYPE, EXECUTE_TYPE, target, target.type());
+        try {
+            return (EventExecutor) callSite.getTarget().invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // The factory of a lambda without captured values only returns the instance
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * Lookup MethodHandles.privateLookupIn(Class, Lookup) without requiring a recent runtime at compile time
+     *
+     * @return Method or null if not available
+     */
+    private static Method findPrivateLookupIn() {
+        try {
+            return MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
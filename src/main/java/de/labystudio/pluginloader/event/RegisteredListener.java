@@ -0,0 +1,115 @@
+package de.labystudio.pluginloader.event;
+
+import de.labystudio.pluginloader.plugin.Plugin;
+
+/**
+ * Event handler of a listener that is registered on the event bus
+ *
+ * @author LabyStudio
+ */
+class RegisteredListener {
+
+    /**
+     * Plugin that registered the listener. Null for listeners of the core.
+     */
+    private final Plugin owner;
+
+    /**
+     * Listener that declares the handler
+     */
+    private final Object listener;
+
+    /**
+     * Type of the handled events
+     */
+    private final Class<?> eventType;
+
+    /**
+     * Calls the handler
+     */
+    private final EventExecutor executor;
+
+    /**
+     * Priority of the handler. Higher priorities are called first.
+     */
+    private final int priority;
+
+    /**
+     * Registration order to call handlers with the same priority in order
+     */
+    private final long sequence;
+
+    /**
+     * Create registered listener
+     *
+     * @param owner     Plugin that registered the listener
+     * @param listener  Listener that declares the handler
+     * @param eventType Type of the handled events
+     * @param executor  Calls the handler
+     * @param priority  Priority of the handler
+     * @param sequence  Registration order
+     */
+    RegisteredListener(Plugin owner, Object listener, Class<?> eventType, EventExecutor executor, int priority, long sequence) {
+        this.owner = owner;
+        this.listener = listener;
+        this.eventType = eventType;
+        this.executor = executor;
+        this.priority = priority;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Pass the event to the handler
+     *
+     * @param event Event to handle
+     * @throws Throwable Exception of the handler
+     */
+    void execute(Object event) throws Throwable {
+        this.executor.execute(this.listener, event);
+    }
+
+    /**
+     * Get the plugin that registered the listener
+     *
+     * @return Owner plugin or null for listeners of the core
+     */
+    Plugin getOwner() {
+        return owner;
+    }
+
+    /**
+     * Get the listener that declares the handler
+     *
+     * @return Listener
+     */
+    Object getListener() {
+        return listener;
+    }
+
+    /**
+     * Get the type of the handled events
+     *
+     * @return Event type
+     */
+    Class<?> getEventType() {
+        return eventType;
+    }
+
+    /**
+     * Get the priority of the handler
+     *
+     * @return Priority
+     */
+    int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Get the registration order
+     *
+     * @return Sequence number of the registration
+     */
+    long getSequence() {
+        return sequence;
+    }
+}
@@ -0,0 +1,25 @@
+package de.labystudio.pluginloader.event;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a listener as event handler.
+ * The method must not be static, return void and have the event as its only parameter.
+ * It receives all events that are instances of the parameter type.
+ *
+ * @author LabyStudio
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Subscribe {
+
+    /**
+     * Priority of the handler. Handlers with higher priorities are called first.
+     *
+     * @return Priority
+     */
+    int priority() default 0;
+}
@@ -0,0 +1,156 @@
+package de.labystudio.pluginloader.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power of two buckets in nanoseconds
+ *
+ * @author LabyStudio
+ */
+public class LatencyHistogram {
+
+    /**
+     * Amount of buckets. Bucket i counts the durations below 2^i nanoseconds.
+     */
+    private static final int BUCKETS = 64;
+
+    /**
+     * Amount of recorded durations per bucket
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Amount of recorded durations
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Sum of all recorded durations in nanoseconds
+     */
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Longest recorded duration in nanoseconds
+     */
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Record a duration
+     *
+     * @param durationNanos Duration in nanoseconds
+     */
+    public void record(long durationNanos) {
+        long duration = Math.max(0, durationNanos);
+
+        this.buckets.incrementAndGet(bucketOf(duration));
+        this.count.increment();
+        this.totalNanos.add(duration);
+        this.maxNanos.accumulateAndGet(duration, Math::max);
+    }
+
+    /**
+     * Get the amount of recorded durations
+     *
+     * @return Amount of recorded durations
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Get the sum of all recorded durations
+     *
+     * @param unit Unit of the returned time
+     * @return Total recorded time
+     */
+    public long getTotal(TimeUnit unit) {
+        return unit.convert(this.totalNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the longest recorded duration
+     *
+     * @param unit Unit of the returned time
+     * @return Longest recorded duration
+     */
+    public long getMax(TimeUnit unit) {
+        return unit.convert(this.maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the average of all recorded durations
+     *
+     * @param unit Unit of the returned time
+     * @return Average duration or zero if nothing was recorded
+     */
+    public double getMean(TimeUnit unit) {
+        long count = this.count.sum();
+        return count == 0 ? 0 : (double) this.totalNanos.sum() / count / unit.toNanos(1);
+    }
+
+    /**
+     * Get an upper bound of the given percentile.
+     * The result is the upper limit of the bucket that contains the percentile and at most twice the real value.
+     *
+     * @param percentile Percentile between 0 and 100
+     * @param unit       Unit of the returned time
+     * @return Upper bound of the percentile or zero if nothing was recorded
+     */
+    public long getPercentile(double percentile, TimeUnit unit) {
+        long[] buckets = getBucketCounts();
+        long count = 0;
+        for (long bucket : buckets) {
+            count += bucket;
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return unit.convert(Math.min(upperBoundOf(i), this.maxNanos.get()), TimeUnit.NANOSECONDS);
+            }
+        }
+        return unit.convert(this.maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get a snapshot of all bucket counts.
+     * Bucket i counts the durations from 2^(i-1) up to 2^i - 1 nanoseconds.
+     *
+     * @return Amount of recorded durations per bucket
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Get the bucket of the given duration
+     *
+     * @param durationNanos Positive duration in nanoseconds
+     * @return Index of the bucket
+     */
+    private static int bucketOf(long durationNanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(durationNanos));
+    }
+
+    /**
+     * Get the largest duration of the given bucket
+     *
+     * @param bucket Index of the bucket
+     * @return Largest duration in nanoseconds
+     */
+    private static long upperBoundOf(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,34 @@
+package de.labystudio.pluginloader.metrics;
+
+/**
+ * Measured phases of loading and unloading a plugin
+ *
+ * @author LabyStudio
+ */
+public enum LifecyclePhase {
+
+    /**
+     * Open the jar file and parse the plugin meta file
+     */
+    META_READ,
+
+    /**
+     * Create the plugin class loader and index the packages of the jar file
+     */
+    CLASS_LOADER_CREATION,
+
+    /**
+     * Load the main class and create the plugin instance
+     */
+    MAIN_CLASS_LOAD,
+
+    /**
+     * Call {@link de.labystudio.pluginloader.plugin.Plugin#onEnable()}
+     */
+    ENABLE,
+
+    /**
+     * Call {@link de.labystudio.pluginloader.plugin.Plugin#onDisable()}
+     */
+    DISABLE
+}
@@ -0,0 +1,162 @@
+package de.labystudio.pluginloader.metrics;
+
+import de.labystudio.pluginloader.PluginLoaderListener;
+import de.labystudio.pluginloader.plugin.Plugin;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plugin loader listener that aggregates the timings and failures of all plugins.
+ * All values can be read at any time to export them to a monitoring system.
+ *
+ * @author LabyStudio
+ */
+public class PluginMetrics implements PluginLoaderListener {
+
+    /**
+     * Latency histogram of each lifecycle phase over all plugins
+     */
+    private final Map<LifecyclePhase, LatencyHistogram> histograms = new EnumMap<>(LifecyclePhase.class);
+
+    /**
+     * Amount of failures of each lifecycle phase over all plugins
+     */
+    private final Map<LifecyclePhase, LongAdder> failures = new EnumMap<>(LifecyclePhase.class);
+
+    /**
+     * Stats of each plugin by its name
+     */
+    private final Map<String, PluginStats> pluginStats = new ConcurrentHashMap<>();
+
+    /**
+     * Amount of loaded plugins
+     */
+    private final LongAdder loadedPlugins = new LongAdder();
+
+    /**
+     * Amount of unloaded plugins
+     */
+    private final LongAdder unloadedPlugins = new LongAdder();
+
+    /**
+     * Create plugin metrics. Register them with {@link de.labystudio.pluginloader.PluginLoader#addListener(PluginLoaderListener)}.
+     */
+    public PluginMetrics() {
+        // The maps are never modified afterwards
+        for (LifecyclePhase phase : LifecyclePhase.values()) {
+            this.histograms.put(phase, new LatencyHistogram());
+            this.failures.put(phase, new LongAdder());
+        }
+    }
+
+    @Override
+    public void onPhaseCompleted(String pluginName, File file, LifecyclePhase phase, long durationNanos) {
+        this.histograms.get(phase).record(durationNanos);
+        statsOf(pluginName, file).recordPhase(file, phase, durationNanos);
+    }
+
+    @Override
+    public void onPhaseFailed(String pluginName, File file, LifecyclePhase phase, Throwable cause) {
+        this.failures.get(phase).increment();
+        statsOf(pluginName, file).recordFailure(file, phase, cause);
+    }
+
+    @Override
+    public void onPluginLoaded(Plugin plugin, int definedClasses) {
+        this.loadedPlugins.increment();
+        statsOf(plugin.getPluginInfo().getName(), plugin.getJarFile()).recordLoaded(definedClasses);
+    }
+
+    @Override
+    public void onPluginUnloaded(Plugin plugin, int definedClasses) {
+        this.unloadedPlugins.increment();
+        statsOf(plugin.getPluginInfo().getName(), plugin.getJarFile()).recordUnloaded(definedClasses);
+    }
+
+    /**
+     * Get or create the stats of the given plugin
+     *
+     * @param pluginName Name of the plugin or null if the plugin meta could not be read
+     * @param file       Plugin jar file
+     * @return Stats of the plugin
+     */
+    private PluginStats statsOf(String pluginName, File file) {
+        String name = pluginName == null ? file.getName() : pluginName;
+        return this.pluginStats.computeIfAbsent(name, PluginStats::new);
+    }
+
+    /**
+     * Get the latency histogram of the given phase over all plugins
+     *
+     * @param phase Lifecycle phase
+     * @return Latency histogram of the phase
+     */
+    public LatencyHistogram getHistogram(LifecyclePhase phase) {
+        return this.histograms.get(phase);
+    }
+
+    /**
+     * Get the amount of failures of the given phase over all plugins
+     *
+     * @param phase Lifecycle phase
+     * @return Amount of failures
+     */
+    public long getFailures(LifecyclePhase phase) {
+        return this.failures.get(phase).sum();
+    }
+
+    /**
+     * Get the stats of the given plugin
+     *
+     * @param pluginName Name of the plugin
+     * @return Stats of the plugin or null if nothing was recorded for it
+     */
+    public PluginStats getPluginStats(String pluginName) {
+        return this.pluginStats.get(pluginName);
+    }
+
+    /**
+     * Get the stats of all plugins by their name
+     *
+     * @return Read-only view of the stats of all plugins
+     */
+    public Map<String, PluginStats> getPluginStats() {
+        return Collections.unmodifiableMap(this.pluginStats);
+    }
+
+    /**
+     * Get the amount of loaded plugins
+     *
+     * @return Amount of plugin loads
+     */
+    public long getLoadedPlugins() {
+        return this.loadedPlugins.sum();
+    }
+
+    /**
+     * Get the amount of unloaded plugins
+     *
+     * @return Amount of plugin unloads
+     */
+    public long getUnloadedPlugins() {
+        return this.unloadedPlugins.sum();
+    }
+
+    /**
+     * Get the amount of classes defined by the last class loader of each plugin
+     *
+     * @return Amount of defined classes
+     */
+    public long getDefinedClasses() {
+        long definedClasses = 0;
+        for (PluginStats stats : this.pluginStats.values()) {
+            definedClasses += stats.getDefinedClasses();
+        }
+        return definedClasses;
+    }
+}
@@ -0,0 +1,183 @@
+package de.labystudio.pluginloader.metrics;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timings and failures of a single plugin
+ *
+ * @author LabyStudio
+ */
+public class PluginStats {
+
+    /**
+     * Name of the plugin or the jar file name if the plugin meta could not be read
+     */
+    private final String name;
+
+    /**
+     * Last measured duration of each lifecycle phase in nanoseconds
+     */
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(LifecyclePhase.values().length);
+
+    /**
+     * Amount of failures of all phases
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * Amount of times the plugin was loaded
+     */
+    private final AtomicInteger loads = new AtomicInteger();
+
+    /**
+     * Last known plugin jar file
+     */
+    private volatile File file;
+
+    /**
+     * Amount of classes defined by the last class loader of the plugin
+     */
+    private volatile int definedClasses;
+
+    /**
+     * Phase of the last failure or null if the plugin never failed
+     */
+    private volatile LifecyclePhase lastFailurePhase;
+
+    /**
+     * Cause of the last failure or null if the plugin never failed
+     */
+    private volatile Throwable lastFailure;
+
+    /**
+     * Create plugin stats
+     *
+     * @param name Name of the plugin
+     */
+    PluginStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record the duration of a finished phase
+     *
+     * @param file          Plugin jar file
+     * @param phase         The finished phase
+     * @param durationNanos Duration in nanoseconds
+     */
+    void recordPhase(File file, LifecyclePhase phase, long durationNanos) {
+        this.file = file;
+        this.phaseNanos.set(phase.ordinal(), durationNanos);
+    }
+
+    /**
+     * Record a failed phase
+     *
+     * @param file  Plugin jar file
+     * @param phase The failed phase
+     * @param cause Cause of the failure
+     */
+    void recordFailure(File file, LifecyclePhase phase, Throwable cause) {
+        this.file = file;
+        this.lastFailurePhase = phase;
+        this.lastFailure = cause;
+        this.failures.incrementAndGet();
+    }
+
+    /**
+     * Record a successful load of the plugin
+     *
+     * @param definedClasses Amount of classes defined so far
+     */
+    void recordLoaded(int definedClasses) {
+        this.definedClasses = definedClasses;
+        this.loads.incrementAndGet();
+    }
+
+    /**
+     * Record the amount of defined classes when the plugin is unloaded
+     *
+     * @param definedClasses Amount of classes defined during the lifetime of the class loader
+     */
+    void recordUnloaded(int definedClasses) {
+        this.definedClasses = definedClasses;
+    }
+
+    /**
+     * Get the last measured duration of the given phase
+     *
+     * @param phase Lifecycle phase
+     * @param unit  Unit of the returned time
+     * @return Last duration or zero if the phase was not measured yet
+     */
+    public long getDuration(LifecyclePhase phase, TimeUnit unit) {
+        return unit.convert(this.phaseNanos.get(phase.ordinal()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the name of the plugin or the jar file name if the plugin meta could not be read
+     *
+     * @return Plugin name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the last known plugin jar file
+     *
+     * @return Plugin jar file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the amount of classes defined by the last class loader of the plugin.
+     * Measured when the plugin is loaded and again when it is unloaded.
+     *
+     * @return Amount of defined classes
+     */
+    public int getDefinedClasses() {
+        return definedClasses;
+    }
+
+    /**
+     * Get the amount of times the plugin was loaded
+     *
+     * @return Amount of loads
+     */
+    public int getLoads() {
+        return this.loads.get();
+    }
+
+    /**
+     * Get the amount of failures of all phases
+     *
+     * @return Amount of failures
+     */
+    public int getFailures() {
+        return this.failures.get();
+    }
+
+    /**
+     * Get the phase of the last failure
+     *
+     * @return Failed phase or null if the plugin never failed
+     */
+    public LifecyclePhase getLastFailurePhase() {
+        return lastFailurePhase;
+    }
+
+    /**
+     * Get the cause of the last failure
+     *
+     * @return Failure cause or null if the plugin never failed
+     */
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+}
@@ -0,0 +1,145 @@
+package de.labystudio.pluginloader.metrics;
+
+import de.labystudio.pluginloader.PluginLoaderListener;
+import de.labystudio.pluginloader.plugin.Plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plugin loader listener that keeps the dependency graph of all loaded plugins with the measured phase timestamps.
+ * Use {@link #createReport()} after the startup to find the plugins that gate the startup.
+ *
+ * @author LabyStudio
+ */
+public class StartupProfiler implements PluginLoaderListener {
+
+    /**
+     * Measured timestamps and dependencies of each plugin by its name
+     */
+    private final Map<String, Measurement> measurements = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPhaseCompleted(String pluginName, File file, LifecyclePhase phase, long durationNanos) {
+        long end = System.nanoTime();
+        this.measurements.computeIfAbsent(pluginName, name -> new Measurement()).record(file, phase, end - durationNanos, end);
+    }
+
+    @Override
+    public void onPluginLoaded(Plugin plugin, int definedClasses) {
+        String[] depends = plugin.getPluginInfo().getDepends();
+        this.measurements.computeIfAbsent(plugin.getPluginInfo().getName(), name -> new Measurement())
+                .loaded(plugin.getJarFile(), depends == null ? new String[0] : depends.clone());
+    }
+
+    @Override
+    public void onPluginUnloaded(Plugin plugin, int definedClasses) {
+        Measurement measurement = this.measurements.get(plugin.getPluginInfo().getName());
+        if (measurement != null) {
+            measurement.unloaded();
+        }
+    }
+
+    /**
+     * Forget all measurements, for example before the plugins are loaded again
+     */
+    public void reset() {
+        this.measurements.clear();
+    }
+
+    /**
+     * Analyze the dependency graph of all currently loaded plugins
+     *
+     * @return Startup report with the critical path and the slack of each plugin
+     */
+    public StartupReport createReport() {
+        List<StartupReport.Node> nodes = new ArrayList<>();
+        for (Map.Entry<String, Measurement> entry : this.measurements.entrySet()) {
+            StartupReport.Node node = entry.getValue().toNode(entry.getKey());
+            if (node != null) {
+                nodes.add(node);
+            }
+        }
+        return new StartupReport(nodes);
+    }
+
+    /**
+     * Measured timestamps and dependencies of a single plugin
+     */
+    private static class Measurement {
+
+        /**
+         * Start time of each phase in nanoseconds or zero if it was not measured
+         */
+        private final long[] startNanos = new long[LifecyclePhase.values().length];
+
+        /**
+         * End time of each phase in nanoseconds or zero if it was not measured
+         */
+        private final long[] endNanos = new long[LifecyclePhase.values().length];
+
+        /**
+         * Plugin jar file
+         */
+        private File file;
+
+        /**
+         * Names of the depending plugins
+         */
+        private String[] depends;
+
+        /**
+         * True while the plugin is loaded
+         */
+        private boolean loaded;
+
+        /**
+         * Record the timestamps of a finished phase
+         *
+         * @param file       Plugin jar file
+         * @param phase      The finished phase
+         * @param startNanos Start time in nanoseconds
+         * @param endNanos   End time in nanoseconds
+         */
+        private synchronized void record(File file, LifecyclePhase phase, long startNanos, long endNanos) {
+            this.file = file;
+            this.startNanos[phase.ordinal()] = startNanos;
+            this.endNanos[phase.ordinal()] = endNanos;
+        }
+
+        /**
+         * Mark the plugin as loaded
+         *
+         * @param file    Plugin jar file
+         * @param depends Names of the depending plugins
+         */
+        private synchronized void loaded(File file, String[] depends) {
+            this.file = file;
+            this.depends = depends;
+            this.loaded = true;
+        }
+
+        /**
+         * Mark the plugin as unloaded
+         */
+        private synchronized void unloaded() {
+            this.loaded = false;
+        }
+
+        /**
+         * Create a snapshot of the measurement for the report
+         *
+         * @param name Name of the plugin
+         * @return Graph node or null if the plugin is not loaded
+         */
+        private synchronized StartupReport.Node toNode(String name) {
+            if (!this.loaded) {
+                return null;
+            }
+            return new StartupReport.Node(name, this.file, this.depends, this.startNanos.clone(), this.endNanos.clone());
+        }
+    }
+}
@@ -0,0 +1,657 @@
+package de.labystudio.pluginloader.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import de.labystudio.pluginloader.plugin.dependency.DependencyResolver;
+import de.labystudio.pluginloader.plugin.meta.DependingPlugin;
+import de.labystudio.pluginloader.plugin.meta.PluginMeta;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Critical path analysis of the plugin startup.
+ * The cost of a plugin is the time to create its class loader, load its main class and enable it.
+ * A plugin can't start before all of its depending plugins finished, so the longest dependency chain
+ * is the shortest possible startup time even with unlimited threads.
+ *
+ * @author LabyStudio
+ */
+public class StartupReport {
+
+    /**
+     * Gson to write the json and trace reports
+     */
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * Phases that are part of the cost of a plugin in the dependency graph.
+     * Reading the plugin meta happens during the discovery before any plugin is loaded.
+     */
+    private static final LifecyclePhase[] LOAD_PHASES = {
+            LifecyclePhase.CLASS_LOADER_CREATION,
+            LifecyclePhase.MAIN_CLASS_LOAD,
+            LifecyclePhase.ENABLE
+    };
+
+    /**
+     * All plugins in dependency order
+     */
+    private final List<Node> nodes = new ArrayList<>();
+
+    /**
+     * All plugins by their name
+     */
+    private final Map<String, Node> nodesByName = new LinkedHashMap<>();
+
+    /**
+     * Names of the plugins on the critical path in dependency order
+     */
+    private final List<String> criticalPath = new ArrayList<>();
+
+    /**
+     * Sum of the cost of all plugins in nanoseconds
+     */
+    private long serialNanos;
+
+    /**
+     * Length of the critical path in nanoseconds
+     */
+    private long criticalPathNanos;
+
+    /**
+     * Measured time from the first to the last recorded phase in nanoseconds
+     */
+    private long wallNanos;
+
+    /**
+     * Earliest recorded timestamp in nanoseconds, the origin of the trace
+     */
+    private long originNanos;
+
+    /**
+     * Analyze the given plugins
+     *
+     * @param nodes Measured plugins. Dependencies on plugins that are not part of the list are ignored.
+     */
+    StartupReport(List<Node> nodes) {
+        // Only keep the edges inside the measured graph
+        Map<String, Node> input = new HashMap<>();
+        for (Node node : nodes) {
+            input.put(node.name, node);
+        }
+        List<DependingPlugin> dependingPlugins = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            List<String> depends = new ArrayList<>();
+            for (String depend : node.depends) {
+                if (input.containsKey(depend)) {
+                    depends.add(depend);
+                }
+            }
+            node.depends = depends.toArray(new String[0]);
+            dependingPlugins.add(new DependingPlugin(node.depends, new PluginMeta(node.name, null), node.file));
+        }
+
+        // Dependency order of the loaded plugins
+        dependingPlugins.sort(Comparator.comparing(plugin -> plugin.getMeta().getName()));
+        for (DependingPlugin dependingPlugin : new DependencyResolver().resolve(dependingPlugins, name -> false).getLoadOrder()) {
+            Node node = input.get(dependingPlugin.getMeta().getName());
+            this.nodes.add(node);
+            this.nodesByName.put(node.name, node);
+        }
+
+        analyze();
+    }
+
+    /**
+     * Compute the earliest finish time, the slack and the critical path of all plugins
+     */
+    private void analyze() {
+        long originNanos = Long.MAX_VALUE;
+        long lastEndNanos = Long.MIN_VALUE;
+
+        // Earliest finish time with unlimited threads
+        Map<String, Node> criticalDependency = new HashMap<>();
+        Node lastNode = null;
+        for (Node node : this.nodes) {
+            // A plugin starts after its latest finishing dependency
+            Node latestDependency = null;
+            for (String depend : node.depends) {
+                Node dependency = this.nodesByName.get(depend);
+                if (latestDependency == null || dependency.earliestFinishNanos > latestDependency.earliestFinishNanos) {
+                    latestDependency = dependency;
+                }
+            }
+            long startNanos = 0;
+            if (latestDependency != null) {
+                startNanos = latestDependency.earliestFinishNanos;
+                criticalDependency.put(node.name, latestDependency);
+            }
+            node.earliestFinishNanos = startNanos + node.getCostNanos();
+            this.serialNanos += node.getCostNanos();
+
+            if (lastNode == null || node.earliestFinishNanos > lastNode.earliestFinishNanos) {
+                lastNode = node;
+            }
+
+            for (int phase = 0; phase < node.startNanos.length; phase++) {
+                if (node.endNanos[phase] != 0) {
+                    originNanos = Math.min(originNanos, node.startNanos[phase]);
+                    lastEndNanos = Math.max(lastEndNanos, node.endNanos[phase]);
+                }
+            }
+        }
+        if (lastNode == null) {
+            return;
+        }
+        this.criticalPathNanos = lastNode.earliestFinishNanos;
+        if (originNanos != Long.MAX_VALUE) {
+            this.originNanos = originNanos;
+            this.wallNanos = lastEndNanos - originNanos;
+        }
+
+        // Latest finish time that does not delay the startup
+        for (Node node : this.nodes) {
+            node.latestFinishNanos = this.criticalPathNanos;
+        }
+        for (int i = this.nodes.size() - 1; i >= 0; i--) {
+            Node node = this.nodes.get(i);
+            long latestStartNanos = node.latestFinishNanos - node.getCostNanos();
+            for (String depend : node.depends) {
+                Node dependency = this.nodesByName.get(depend);
+                dependency.latestFinishNanos = Math.min(dependency.latestFinishNanos, latestStartNanos);
+            }
+        }
+
+        // Follow the latest finishing dependency from the last plugin back to the first
+        for (Node node = lastNode; node != null; node = criticalDependency.get(node.name)) {
+            node.critical = true;
+            this.criticalPath.add(node.name);
+        }
+        Collections.reverse(this.criticalPath);
+    }
+
+    /**
+     * Get all plugins in dependency order
+     *
+     * @return Measured plugins
+     */
+    public List<Node> getNodes() {
+        return Collections.unmodifiableList(this.nodes);
+    }
+
+    /**
+     * Get the measured plugin with the given name
+     *
+     * @param pluginName Name of the plugin
+     * @return Measured plugin or null if the plugin is not part of the report
+     */
+    public Node getNode(String pluginName) {
+        return this.nodesByName.get(pluginName);
+    }
+
+    /**
+     * Get the names of the plugins on the critical path in dependency order.
+     * Speeding up any other plugin does not shorten the startup.
+     *
+     * @return Names of the plugins on the critical path
+     */
+    public List<String> getCriticalPath() {
+        return Collections.unmodifiableList(this.criticalPath);
+    }
+
+    /**
+     * Get the length of the critical path.
+     * This is the shortest possible startup time if all independent plugins are loaded in parallel.
+     *
+     * @param unit Unit of the returned time
+     * @return Length of the critical path
+     */
+    public long getCriticalPathTime(TimeUnit unit) {
+        return unit.convert(this.criticalPathNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the sum of the cost of all plugins. This is the startup time if all plugins are loaded one by one.
+     *
+     * @param unit Unit of the returned time
+     * @return Total cost of all plugins
+     */
+    public long getSerialTime(TimeUnit unit) {
+        return unit.convert(this.serialNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the time that can be saved by loading independent plugins in parallel
+     *
+     * @param unit Unit of the returned time
+     * @return Serial time minus the critical path time
+     */
+    public long getParallelizableTime(TimeUnit unit) {
+        return unit.convert(this.serialNanos - this.criticalPathNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the measured time from the first plugin meta read to the last enabled plugin
+     *
+     * @param unit Unit of the returned time
+     * @return Measured startup time
+     */
+    public long getWallTime(TimeUnit unit) {
+        return unit.convert(this.wallNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Export the report as json
+     *
+     * @return Json report with the summary and all plugins
+     */
+    public String toJson() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("wallTimeMillis", toMillis(this.wallNanos));
+        report.put("serialTimeMillis", toMillis(this.serialNanos));
+        report.put("criticalPathTimeMillis", toMillis(this.criticalPathNanos));
+        report.put("parallelizableTimeMillis", toMillis(this.serialNanos - this.criticalPathNanos));
+        report.put("criticalPath", this.criticalPath);
+
+        List<Map<String, Object>> plugins = new ArrayList<>(this.nodes.size());
+        for (Node node : this.nodes) {
+            Map<String, Object> plugin = new LinkedHashMap<>();
+            plugin.put("name", node.name);
+            plugin.put("file", node.file == null ? null : node.file.getName());
+            plugin.put("depends", node.depends);
+            Map<String, Object> phases = new LinkedHashMap<>();
+            for (LifecyclePhase phase : LifecyclePhase.values()) {
+                phases.put(phase.name(), toMillis(node.getDuration(phase)));
+            }
+            plugin.put("phaseMillis", phases);
+            plugin.put("costMillis", toMillis(node.getCostNanos()));
+            plugin.put("earliestFinishMillis", toMillis(node.earliestFinishNanos));
+            plugin.put("slackMillis", toMillis(node.getSlackNanos()));
+            plugin.put("critical", node.critical);
+            plugins.add(plugin);
+        }
+        report.put("plugins", plugins);
+
+        return GSON.toJson(report);
+    }
+
+    /**
+     * Export the dependency graph in the Graphviz DOT format.
+     * Each edge points from a plugin to its dependent plugin. The critical path is highlighted in red.
+     *
+     * @return DOT graph
+     */
+    public String toDot() {
+        StringBuilder dot = new StringBuilder("digraph startup {\n");
+        dot.append("    rankdir=LR;\n");
+        dot.append("    node [shape=box];\n");
+
+        for (Node node : this.nodes) {
+            dot.append("    ").append(quote(node.name))
+                    .append(" [label=\"").append(escape(node.name))
+                    .append(String.format("\\n%.2f ms\\nslack %.2f ms\"", toMillis(node.getCostNanos()), toMillis(node.getSlackNanos())))
+                    .append(node.critical ? ", color=red, penwidth=2" : "")
+                    .append("];\n");
+        }
+
+        Set<String> criticalEdges = new LinkedHashSet<>();
+        for (int i = 1; i < this.criticalPath.size(); i++) {
+            criticalEdges.add(this.criticalPath.get(i - 1) + "\n" + this.criticalPath.get(i));
+        }
+        for (Node node : this.nodes) {
+            for (String depend : node.depends) {
+                dot.append("    ").append(quote(depend)).append(" -> ").append(quote(node.name))
+                        .append(criticalEdges.contains(depend + "\n" + node.name) ? " [color=red, penwidth=2]" : "")
+                        .append(";\n");
+            }
+        }
+
+        return dot.append("}\n").toString();
+    }
+
+    /**
+     * Export the measured phases in the Chrome trace event format.
+     * Open the result in chrome://tracing or Perfetto. Plugins that overlapped in time are shown in separate rows.
+     *
+     * @return Json trace
+     */
+    public String toChromeTrace() {
+        List<Map<String, Object>> events = new ArrayList<>();
+        events.add(processName(1, "Discovery"));
+        events.add(processName(2, "Startup"));
+
+        // Reading the plugin meta files
+        List<long[]> discoveryLanes = new ArrayList<>();
+        for (Node node : sortedByStart(LifecyclePhase.META_READ)) {
+            int phase = LifecyclePhase.META_READ.ordinal();
+            int lane = assignLane(discoveryLanes, node.startNanos[phase], node.endNanos[phase]);
+            events.add(completeEvent(node.name, "discovery", 1, lane, node.startNanos[phase], node.endNanos[phase], null));
+        }
+
+        // Loading the plugins with each phase nested in the plugin
+        List<long[]> startupLanes = new ArrayList<>();
+        for (Node node : sortedByStart(LifecyclePhase.CLASS_LOADER_CREATION)) {
+            long startNanos = Long.MAX_VALUE;
+            long endNanos = Long.MIN_VALUE;
+            for (LifecyclePhase phase : LOAD_PHASES) {
+                if (node.endNanos[phase.ordinal()] != 0) {
+                    startNanos = Math.min(startNanos, node.startNanos[phase.ordinal()]);
+                    endNanos = Math.max(endNanos, node.endNanos[phase.ordinal()]);
+                }
+            }
+
+            Map<String, Object> args = new LinkedHashMap<>();
+            args.put("slackMillis", toMillis(node.getSlackNanos()));
+            args.put("critical", node.critical);
+
+            int lane = assignLane(startupLanes, startNanos, endNanos);
+            events.add(completeEvent(node.name, "plugin", 2, lane, startNanos, endNanos, args));
+            for (LifecyclePhase phase : LOAD_PHASES) {
+                if (node.endNanos[phase.ordinal()] != 0) {
+                    events.add(completeEvent(phase.name(), "phase", 2, lane,
+                            node.startNanos[phase.ordinal()], node.endNanos[phase.ordinal()], null));
+                }
+            }
+        }
+
+        Map<String, Object> trace = new LinkedHashMap<>();
+        trace.put("traceEvents", events);
+        trace.put("displayTimeUnit", "ms");
+        return GSON.toJson(trace);
+    }
+
+    /**
+     * Get all plugins with a measured start of the given phase sorted by the start time
+     *
+     * @param phase First phase to sort by
+     * @return Sorted plugins
+     */
+    private List<Node> sortedByStart(LifecyclePhase phase) {
+        List<Node> nodes = new ArrayList<>();
+        for (Node node : this.nodes) {
+            if (node.endNanos[phase.ordinal()] != 0) {
+                nodes.add(node);
+            }
+        }
+        nodes.sort(Comparator.comparingLong(node -> node.startNanos[phase.ordinal()]));
+        return nodes;
+    }
+
+    /**
+     * Find the first row of the trace that is free at the given start time and occupy it
+     *
+     * @param lanes      End time of each row
+     * @param startNanos Start time of the event
+     * @param endNanos   End time of the event
+     * @return Index of the row
+     */
+    private static int assignLane(List<long[]> lanes, long startNanos, long endNanos) {
+        for (int lane = 0; lane < lanes.size(); lane++) {
+            if (lanes.get(lane)[0] <= startNanos) {
+                lanes.get(lane)[0] = endNanos;
+                return lane;
+            }
+        }
+        lanes.add(new long[]{endNanos});
+        return lanes.size() - 1;
+    }
+
+    /**
+     * Create a complete trace event
+     *
+     * @param name       Name of the event
+     * @param category   Category of the event
+     * @param pid        Process row of the event
+     * @param tid        Thread row of the event
+     * @param startNanos Start time of the event
+     * @param endNanos   End time of the event
+     * @param args       Additional arguments or null
+     * @return Trace event
+     */
+    private Map<String, Object> completeEvent(String name, String category, int pid, int tid,
+                                              long startNanos, long endNanos, Map<String, Object> args) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("name", name);
+        event.put("cat", category);
+        event.put("ph", "X");
+        event.put("ts", (startNanos - this.originNanos) / 1000.0);
+        event.put("dur", (endNanos - startNanos) / 1000.0);
+        event.put("pid", pid);
+        event.put("tid", tid);
+        if (args != null) {
+            event.put("args", args);
+        }
+        return event;
+    }
+
+    /**
+     * Create a trace event that names a process row
+     *
+     * @param pid  Process row
+     * @param name Name of the row
+     * @return Trace metadata event
+     */
+    private static Map<String, Object> processName(int pid, String name) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("name", "process_name");
+        event.put("ph", "M");
+        event.put("pid", pid);
+        event.put("args", Collections.singletonMap("name", name));
+        return event;
+    }
+
+    /**
+     * Quote the given identifier for the DOT format
+     *
+     * @param value Identifier to quote
+     * @return Quoted identifier
+     */
+    private static String quote(String value) {
+        return "\"" + escape(value) + "\"";
+    }
+
+    /**
+     * Escape the quotes of the given value for the DOT format
+     *
+     * @param value Value to escape
+     * @return Escaped value
+     */
+    private static String escape(String value) {
+        return value.replace("\"", "\\\"");
+    }
+
+    /**
+     * Convert nanoseconds to fractional milliseconds
+     *
+     * @param nanos Time in nanoseconds
+     * @return Time in milliseconds
+     */
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Measured plugin in the dependency graph
+     */
+    public static class Node {
+
+        /**
+         * Name of the plugin
+         */
+        private final String name;
+
+        /**
+         * Plugin jar file
+         */
+        private final File file;
+
+        /**
+         * Start time of each phase in nanoseconds or zero if it was not measured
+         */
+        private final long[] startNanos;
+
+        /**
+         * End time of each phase in nanoseconds or zero if it was not measured
+         */
+        private final long[] endNanos;
+
+        /**
+         * Names of the depending plugins inside the measured graph
+         */
+        private String[] depends;
+
+        /**
+         * Earliest finish time with unlimited threads relative to the start of the first plugin
+         */
+        private long earliestFinishNanos;
+
+        /**
+         * Latest finish time that does not delay the startup
+         */
+        private long latestFinishNanos;
+
+        /**
+         * True if the plugin is on the critical path
+         */
+        private boolean critical;
+
+        /**
+         * Create node
+         *
+         * @param name       Name of the plugin
+         * @param file       Plugin jar file
+         * @param depends    Names of the depending plugins
+         * @param startNanos Start time of each phase
+         * @param endNanos   End time of each phase
+         */
+        Node(String name, File file, String[] depends, long[] startNanos, long[] endNanos) {
+            this.name = name;
+            this.file = file;
+            this.depends = depends;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+
+        /**
+         * Get the measured duration of the given phase
+         *
+         * @param phase Lifecycle phase
+         * @return Duration in nanoseconds or zero if it was not measured
+         */
+        private long getDuration(LifecyclePhase phase) {
+            int index = phase.ordinal();
+            return this.endNanos[index] == 0 ? 0 : this.endNanos[index] - this.startNanos[index];
+        }
+
+        /**
+         * Get the cost of the plugin in the dependency graph
+         *
+         * @return Time to create the class loader, load the main class and enable the plugin in nanoseconds
+         */
+        private long getCostNanos() {
+            long costNanos = 0;
+            for (LifecyclePhase phase : LOAD_PHASES) {
+                costNanos += getDuration(phase);
+            }
+            return costNanos;
+        }
+
+        /**
+         * Get the slack in nanoseconds
+         *
+         * @return Time the plugin could take longer without delaying the startup
+         */
+        private long getSlackNanos() {
+            return this.latestFinishNanos - this.earliestFinishNanos;
+        }
+
+        /**
+         * Get the name of the plugin
+         *
+         * @return Plugin name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the plugin jar file
+         *
+         * @return Plugin jar file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Get the names of the depending plugins inside the measured graph
+         *
+         * @return Names of the depending plugins
+         */
+        public String[] getDepends() {
+            return depends.clone();
+        }
+
+        /**
+         * Get the measured duration of the given phase
+         *
+         * @param phase Lifecycle phase
+         * @param unit  Unit of the returned time
+         * @return Duration or zero if the phase was not measured
+         */
+        public long getDuration(LifecyclePhase phase, TimeUnit unit) {
+            return unit.convert(getDuration(phase), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Get the cost of the plugin in the dependency graph.
+         * This is the time to create the class loader, load the main class and enable the plugin.
+         *
+         * @param unit Unit of the returned time
+         * @return Cost of the plugin
+         */
+        public long getCost(TimeUnit unit) {
+            return unit.convert(getCostNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Get the earliest time the plugin can finish if all independent plugins are loaded in parallel
+         *
+         * @param unit Unit of the returned time
+         * @return Earliest finish time relative to the start of the first plugin
+         */
+        public long getEarliestFinish(TimeUnit unit) {
+            return unit.convert(this.earliestFinishNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Get the time the plugin could take longer without delaying the startup.
+         * Plugins on the critical path have no slack.
+         *
+         * @param unit Unit of the returned time
+         * @return Slack of the plugin
+         */
+        public long getSlack(TimeUnit unit) {
+            return unit.convert(getSlackNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Check if the plugin is on the critical path
+         *
+         * @return True if the plugin gates the startup
+         */
+        public boolean isCritical() {
+            return critical;
+        }
+    }
+}
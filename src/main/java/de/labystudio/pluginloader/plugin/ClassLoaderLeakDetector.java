@@ -0,0 +1,77 @@
+package de.labystudio.pluginloader.plugin;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the class loaders of unloaded plugins to detect class loaders that are never garbage collected
+ *
+ * @author LabyStudio
+ */
+public class ClassLoaderLeakDetector {
+
+    /**
+     * Queue of phantom references of collected class loaders
+     */
+    private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<>();
+
+    /**
+     * Phantom references of all unloaded class loaders that are still alive mapped to the plugin name.
+     * The references must be strongly reachable to be enqueued.
+     */
+    private final Map<Reference<? extends ClassLoader>, String> aliveClassLoaders = new ConcurrentHashMap<>();
+
+    /**
+     * Start tracking the class loader of an unloaded plugin
+     *
+     * @param pluginName  Name of the unloaded plugin
+     * @param classLoader Class loader of the unloaded plugin
+     */
+    public void track(String pluginName, ClassLoader classLoader) {
+        this.aliveClassLoaders.put(new PhantomReference<>(classLoader, this.queue), pluginName);
+    }
+
+    /**
+     * Get the plugin names of all tracked class loaders that were not garbage collected yet
+     *
+     * @return Plugin names of the class loaders that are still alive. A name occurs once for each reload.
+     */
+    public List<String> getAliveClassLoaders() {
+        Reference<? extends ClassLoader> reference;
+        while ((reference = this.queue.poll()) != null) {
+            this.aliveClassLoaders.remove(reference);
+        }
+        return new ArrayList<>(this.aliveClassLoaders.values());
+    }
+
+    /**
+     * Request a garbage collection and get the plugin names of all class loaders that survived it.
+     * The returned class loaders are most likely still referenced by a thread, a static field or the core project.
+     *
+     * @param timeoutMillis Maximum time to wait for the garbage collector to enqueue the collected class loaders
+     * @return Plugin names of the class loaders that are still alive
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    public List<String> detectLeaks(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        System.gc();
+
+        while (!this.aliveClassLoaders.isEmpty()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+
+            Reference<? extends ClassLoader> reference = this.queue.remove(remaining);
+            if (reference != null) {
+                this.aliveClassLoaders.remove(reference);
+            }
+        }
+        return getAliveClassLoaders();
+    }
+}
@@ -0,0 +1,211 @@
+package de.labystudio.pluginloader.plugin;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import de.labystudio.pluginloader.PluginLoaderLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent profile of the classes each plugin loaded during previous runs.
+ * The classes of a plugin are only used as long as its jar file has the same content hash.
+ *
+ * @author LabyStudio
+ */
+public class ClassPreloadProfile {
+
+    /**
+     * Gson instance to read and write the profile file
+     */
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Version of the profile file format. Profile files of other versions are discarded.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Profile file location
+     */
+    private final File file;
+
+    /**
+     * Recorded classes of each plugin by the plugin name
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * True if the profile changed since it was loaded
+     */
+    private volatile boolean dirty;
+
+    /**
+     * Create an empty profile
+     *
+     * @param file Profile file location
+     */
+    private ClassPreloadProfile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Load the profile from the given file.
+     * A missing, outdated or corrupt profile file results in an empty profile.
+     *
+     * @param file   Profile file location
+     * @param logger Logger to report a corrupt profile file
+     * @return Loaded profile
+     */
+    public static ClassPreloadProfile load(File file, PluginLoaderLogger logger) {
+        ClassPreloadProfile profile = new ClassPreloadProfile(file);
+        if (!file.exists()) {
+            return profile;
+        }
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Storage storage = GSON.fromJson(reader, Storage.class);
+            if (storage == null || storage.version != VERSION || storage.entries == null) {
+                profile.dirty = true;
+                return profile;
+            }
+
+            for (Entry entry : storage.entries) {
+                if (entry != null && entry.pluginName != null && entry.jarHash != null && entry.classes != null) {
+                    profile.entries.put(entry.pluginName, entry);
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.log("Discarding corrupt class preload profile " + file.getName() + ": " + e.getMessage());
+            profile.entries.clear();
+            profile.dirty = true;
+        }
+        return profile;
+    }
+
+    /**
+     * Get the recorded classes of the given plugin
+     *
+     * @param pluginName Name of the plugin
+     * @param jarHash    SHA-256 digest of the current jar file of the plugin
+     * @return Binary names of the recorded classes or null if nothing was recorded for this jar file
+     */
+    public List<String> getClasses(String pluginName, String jarHash) {
+        Entry entry = this.entries.get(pluginName);
+        return entry == null || !entry.jarHash.equals(jarHash) ? null : entry.classes;
+    }
+
+    /**
+     * Add the loaded classes of the given plugin to the profile.
+     * The classes of previous runs with the same jar file are kept, the classes of other jar files are discarded.
+     *
+     * @param pluginName Name of the plugin
+     * @param jarHash    SHA-256 digest of the jar file of the plugin
+     * @param classes    Binary names of the loaded classes
+     */
+    public void update(String pluginName, String jarHash, Collection<String> classes) {
+        Entry previous = this.entries.get(pluginName);
+
+        TreeSet<String> merged = new TreeSet<>(classes);
+        if (previous != null && previous.jarHash.equals(jarHash)) {
+            if (previous.classes.containsAll(merged)) {
+                return;
+            }
+            merged.addAll(previous.classes);
+        }
+
+        this.entries.put(pluginName, new Entry(pluginName, jarHash, new ArrayList<>(merged)));
+        this.dirty = true;
+    }
+
+    /**
+     * Write the profile to the profile file if it changed.
+     * The file is replaced atomically to never leave a partially written profile.
+     * Saves are serialized because they share the same temporary file.
+     *
+     * @throws IOException Exception while writing the profile file
+     */
+    public synchronized void save() throws IOException {
+        if (!this.dirty) {
+            return;
+        }
+
+        // Cleared before the snapshot, so updates during the write mark the profile as changed again
+        this.dirty = false;
+
+        Storage storage = new Storage();
+        storage.version = VERSION;
+        storage.entries = new ArrayList<>(this.entries.values());
+
+        Path target = this.file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                GSON.toJson(storage, writer);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            this.dirty = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Recorded classes of a plugin
+     */
+    private static class Entry {
+
+        /**
+         * Name of the plugin
+         */
+        private final String pluginName;
+
+        /**
+         * SHA-256 digest of the jar file the classes were recorded with
+         */
+        private final String jarHash;
+
+        /**
+         * Binary names of the recorded classes in alphabetical order
+         */
+        private final List<String> classes;
+
+        /**
+         * Create profile entry
+         *
+         * @param pluginName Name of the plugin
+         * @param jarHash    SHA-256 digest of the jar file
+         * @param classes    Binary names of the recorded classes
+         */
+        private Entry(String pluginName, String jarHash, List<String> classes) {
+            this.pluginName = pluginName;
+            this.jarHash = jarHash;
+            this.classes = classes;
+        }
+    }
+
+    /**
+     * Serialized form of the profile file
+     */
+    private static class Storage {
+        private int version;
+        private List<Entry> entries;
+    }
+}
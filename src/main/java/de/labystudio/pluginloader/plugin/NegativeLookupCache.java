@@ -0,0 +1,109 @@
+package de.labystudio.pluginloader.plugin;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of class or resource names that are known to be absent
+ *
+ * @author LabyStudio
+ */
+public class NegativeLookupCache {
+
+    /**
+     * Maximum amount of cached names
+     */
+    private final int maxSize;
+
+    /**
+     * All cached names that are known to be absent
+     */
+    private final Map<String, Boolean> absentNames = new ConcurrentHashMap<>();
+
+    /**
+     * Amount of lookups that were answered by the cache
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Amount of lookups that were not answered by the cache
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a negative lookup cache
+     *
+     * @param maxSize Maximum amount of cached names
+     */
+    public NegativeLookupCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Check if the given name is known to be absent
+     *
+     * @param name Class or resource name
+     * @return True if the name is known to be absent
+     */
+    public boolean isAbsent(String name) {
+        if (this.absentNames.containsKey(name)) {
+            this.hits.increment();
+            return true;
+        }
+        this.misses.increment();
+        return false;
+    }
+
+    /**
+     * Remember that the given name is absent.
+     * Evicts an arbitrary other name if the cache is full.
+     *
+     * @param name Class or resource name
+     */
+    public void markAbsent(String name) {
+        if (this.absentNames.size() >= this.maxSize) {
+            Iterator<String> iterator = this.absentNames.keySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        this.absentNames.put(name, Boolean.TRUE);
+    }
+
+    /**
+     * Forget all cached names
+     */
+    public void invalidate() {
+        this.absentNames.clear();
+    }
+
+    /**
+     * Get the amount of lookups that were answered by the cache
+     *
+     * @return Amount of cache hits
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Get the amount of lookups that were not answered by the cache
+     *
+     * @return Amount of cache misses
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Get the amount of cached names
+     *
+     * @return Amount of cached names
+     */
+    public int size() {
+        return this.absentNames.size();
+    }
+}
@@ -3,8 +3,11 @@ package de.labystudio.pluginloader.plugin;
 import de.labystudio.pluginloader.Core;
 import de.labystudio.pluginloader.PluginLoader;
 import de.labystudio.pluginloader.plugin.meta.PluginMeta;
+import de.labystudio.pluginloader.scheduler.PluginScheduler;
+import de.labystudio.pluginloader.service.ServiceRegistration;
 
 import java.io.File;
+import java.lang.invoke.MethodHandles;
 
 /**
  * Abstract plugin instance.
@@ -82,6 +85,41 @@ public abstract class Plugin {
         this.jarFile = jarFile;
     }
 
+    /**
+     * Provide a service implementation to other plugins.
+     * The service is unregistered automatically when this plugin is unloaded.
+     *
+     * @param type           Service type
+     * @param implementation Service implementation
+     * @param priority       Priority of the implementation. Higher priorities are preferred.
+     * @param <S>            Service type
+     * @return Registration to unregister the implementation
+     */
+    protected <S> ServiceRegistration<S> registerService(Class<S> type, S implementation, int priority) {
+        return this.pluginLoader.getServiceRegistry().register(this, type, implementation, priority);
+    }
+
+    /**
+     * Register all {@link de.labystudio.pluginloader.event.Subscribe} methods of the given listener on the event bus.
+     * The listener is unregistered automatically when this plugin is unloaded.
+     *
+     * @param listener Listener with handler methods
+     * @param lookup   <code>MethodHandles.lookup()</code> of any class of this plugin to call the handlers directly
+     */
+    protected void registerListener(Object listener, MethodHandles.Lookup lookup) {
+        this.pluginLoader.getEventBus().register(this, listener, lookup);
+    }
+
+    /**
+     * Get the executor and scheduler of this plugin.
+     * Use them instead of own threads, they are shut down by the plugin loader when this plugin is unloaded.
+     *
+     * @return Plugin scheduler
+     */
+    public PluginScheduler getScheduler() {
+        return this.pluginLoader.getScheduler(this);
+    }
+
     /**
      * Get the plugin meta information from the json
      *
@@ -1,13 +1,31 @@
 package de.labystudio.pluginloader.plugin;
 
+import de.labystudio.pluginloader.plugin.library.NestedLibraryEntry;
+import de.labystudio.pluginloader.plugin.library.NestedLibraryIndex;
 import de.labystudio.pluginloader.plugin.meta.PluginMeta;
 import de.labystudio.pluginloader.Core;
 import de.labystudio.pluginloader.PluginLoader;
 
 import java.io.File;
-import java.net.MalformedURLException;
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 /**
  * Plugin class loader
@@ -16,6 +34,16 @@ import java.net.URLClassLoader;
  */
 public class PluginClassLoader extends URLClassLoader {
 
+    static {
+        // Use a lock per class name instead of locking the whole class loader
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    /**
+     * Maximum amount of absent class and resource names to remember
+     */
+    private static final int NEGATIVE_CACHE_SIZE = 4096;
+
     /**
      * The instance of the core project
      */
@@ -41,10 +69,62 @@ public class PluginClassLoader extends URLClassLoader {
      */
     private final File file;
 
+    /**
+     * All packages and resource directories of the jar file
+     */
+    private final Set<String> packages;
+
+    /**
+     * Library jars in the lib directory of the jar file
+     */
+    private final NestedLibraryIndex libraries;
+
+    /**
+     * Protection domain of the classes of the library jars
+     */
+    private final ProtectionDomain libraryDomain;
+
+    /**
+     * Packages of the library jars that are already defined by this class loader
+     */
+    private final Set<String> libraryPackages = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Packages of all depending plugins mapped to the class loaders of the plugins that contain them, in lookup order.
+     * Packages may be split across this plugin and its depending plugins.
+     * The map is replaced instead of modified to keep lookups lock-free.
+     */
+    private volatile Map<String, List<PluginClassLoader>> dependencyPackages;
+
+    /**
+     * Class names that are known to be absent
+     */
+    private final NegativeLookupCache classMissCache = new NegativeLookupCache(NEGATIVE_CACHE_SIZE);
+
+    /**
+     * Resource names that are known to be absent
+     */
+    private final NegativeLookupCache resourceMissCache = new NegativeLookupCache(NEGATIVE_CACHE_SIZE);
+
+    /**
+     * Amount of classes defined by this class loader
+     */
+    private final AtomicInteger definedClasses = new AtomicInteger();
+
+    /**
+     * Binary names of all classes defined by this class loader or null if the classes are not recorded
+     */
+    private volatile Set<String> recordedClasses;
+
+    /**
+     * SHA-256 digest of the jar file when the classes started to be recorded or null if the classes are not recorded
+     */
+    private volatile String recordedJarDigest;
+
     /**
      * Plugin instance
      */
-    private Plugin plugin;
+    private volatile Plugin plugin;
 
     /**
      * Create plugin class loader
@@ -56,7 +136,23 @@ public class PluginClassLoader extends URLClassLoader {
      * @param dataDirectory Data directory location to store config files of the plugin
      * @param file          Jar file location
      */
-    public PluginClassLoader(ClassLoader parent, Core core, PluginLoader pluginLoader, PluginMeta meta, File dataDirectory, File file) throws MalformedURLException {
+    public PluginClassLoader(ClassLoader parent, Core core, PluginLoader pluginLoader, PluginMeta meta, File dataDirectory, File file) throws IOException {
+        this(parent, Collections.emptyList(), core, pluginLoader, meta, dataDirectory, file);
+    }
+
+    /**
+     * Create plugin class loader that delegates to the class loaders of all depending plugins
+     *
+     * @param parent        Parent class loader
+     * @param dependencies  Class loaders of all depending plugins
+     * @param core          The instance of the core project
+     * @param pluginLoader  Plugin loader to load the source classes
+     * @param meta          Plugin meta information from the plugin json
+     * @param dataDirectory Data directory location to store config files of the plugin
+     * @param file          Jar file location
+     */
+    public PluginClassLoader(ClassLoader parent, List<PluginClassLoader> dependencies, Core core, PluginLoader pluginLoader,
+                             PluginMeta meta, File dataDirectory, File file) throws IOException {
         super(new URL[]{file.toURI().toURL()}, parent);
 
         this.core = core;
@@ -64,6 +160,342 @@ public class PluginClassLoader extends URLClassLoader {
         this.meta = meta;
         this.dataDirectory = dataDirectory;
         this.file = file;
+        this.packages = indexPackages(file);
+
+        // Library jars are only scanned if the jar file has a lib directory
+        this.libraries = this.packages.contains(NestedLibraryIndex.LIBRARY_DIRECTORY.replace("/", ""))
+                ? NestedLibraryIndex.of(file)
+                : NestedLibraryIndex.EMPTY;
+        this.packages.addAll(this.libraries.getPackages());
+        this.libraryDomain = new ProtectionDomain(new CodeSource(getURLs()[0], (CodeSigner[]) null), null, this, null);
+
+        // Index the packages of all depending plugins including their own dependencies, each dependency before its own dependencies
+        Map<String, Set<PluginClassLoader>> owners = new HashMap<>();
+        for (PluginClassLoader dependency : dependencies) {
+            for (String packageName : dependency.packages) {
+                owners.computeIfAbsent(packageName, key -> new LinkedHashSet<>()).add(dependency);
+            }
+            for (Map.Entry<String, List<PluginClassLoader>> entry : dependency.dependencyPackages.entrySet()) {
+                owners.computeIfAbsent(entry.getKey(), key -> new LinkedHashSet<>()).addAll(entry.getValue());
+            }
+        }
+
+        Map<String, List<PluginClassLoader>> dependencyPackages = new HashMap<>();
+        for (Map.Entry<String, Set<PluginClassLoader>> entry : owners.entrySet()) {
+            dependencyPackages.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+        }
+        this.dependencyPackages = dependencyPackages;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (this.classMissCache.isAbsent(name)) {
+            throw new ClassNotFoundException(name);
+        }
+
+        try {
+            // Classes of depending plugins are found without asking the plugins that don't contain the package
+            String packageName = packageOf(name, '.');
+            List<PluginClassLoader> owners = this.dependencyPackages.get(packageName);
+            if (owners == null) {
+                return super.loadClass(name, resolve);
+            }
+
+            Class<?> clazz = loadSplitClass(name, packageName, owners);
+            if (resolve) {
+                resolveClass(clazz);
+            }
+            return clazz;
+        } catch (ClassNotFoundException e) {
+            this.classMissCache.markAbsent(name);
+            throw e;
+        }
+    }
+
+    /**
+     * Load a class of a package that depending plugins contain.
+     * The jar file of this plugin is asked first if it contains the package as well, then each depending plugin in order.
+     *
+     * @param name        Binary name of the class
+     * @param packageName Package of the class
+     * @param owners      Class loaders of the depending plugins that contain the package
+     * @return The loaded class
+     * @throws ClassNotFoundException If neither this plugin nor a depending plugin contains the class
+     */
+    private Class<?> loadSplitClass(String name, String packageName, List<PluginClassLoader> owners) throws ClassNotFoundException {
+        ClassNotFoundException exception = null;
+        if (this.packages.contains(packageName)) {
+            try {
+                return loadLocalClass(name);
+            } catch (ClassNotFoundException e) {
+                exception = e;
+            }
+        }
+
+        for (PluginClassLoader owner : owners) {
+            try {
+                return owner.loadLocalClass(name);
+            } catch (ClassNotFoundException e) {
+                exception = e;
+            }
+        }
+        throw exception == null ? new ClassNotFoundException(name) : exception;
+    }
+
+    /**
+     * Load a class from the parent class loader or the jar file of this plugin without asking the depending plugins.
+     * Only the lock of the given class name is held while the class is defined.
+     *
+     * @param name Binary name of the class
+     * @return The loaded class
+     * @throws ClassNotFoundException If the class is not part of this plugin
+     */
+    Class<?> loadLocalClass(String name) throws ClassNotFoundException {
+        return super.loadClass(name, false);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        Class<?> clazz;
+        try {
+            clazz = super.findClass(name);
+        } catch (ClassNotFoundException e) {
+            clazz = findLibraryClass(name);
+            if (clazz == null) {
+                throw e;
+            }
+        }
+        this.definedClasses.incrementAndGet();
+
+        Set<String> recordedClasses = this.recordedClasses;
+        if (recordedClasses != null) {
+            recordedClasses.add(name);
+        }
+        return clazz;
+    }
+
+    /**
+     * Define a class of the library jars straight from memory
+     *
+     * @param name Binary name of the class
+     * @return The defined class or null if no library jar contains the class
+     * @throws ClassNotFoundException If the class file is corrupt
+     */
+    private Class<?> findLibraryClass(String name) throws ClassNotFoundException {
+        NestedLibraryEntry entry = this.libraries.getEntry(name.replace('.', '/') + ".class");
+        if (entry == null) {
+            return null;
+        }
+
+        String packageName = packageOf(name, '.');
+        if (!packageName.isEmpty() && this.libraryPackages.add(packageName)) {
+            try {
+                definePackage(packageName, null, null, null, null, null, null, null);
+            } catch (IllegalArgumentException e) {
+                // Already defined by a class of the plugin jar in the same package
+            }
+        }
+
+        try {
+            return defineClass(name, entry.getContent(), this.libraryDomain);
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+    }
+
+    @Override
+    public URL findResource(String name) {
+        URL resource = super.findResource(name);
+        if (resource == null) {
+            NestedLibraryEntry entry = this.libraries.getEntry(name);
+            if (entry != null) {
+                resource = this.libraries.toURL(entry);
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * Open the jar file right away instead of on the first class or resource lookup.
+     * Classes and resources are read from the opened jar file from now on.
+     */
+    public void openJarFile() {
+        // Any lookup opens the jar file of the url class path
+        super.findResource(JarFile.MANIFEST_NAME);
+    }
+
+    /**
+     * Start recording the names of all classes defined by this class loader
+     *
+     * @param jarDigest SHA-256 digest of the opened jar file that the recorded classes belong to
+     */
+    public void recordClasses(String jarDigest) {
+        if (this.recordedClasses == null) {
+            this.recordedJarDigest = jarDigest;
+            this.recordedClasses = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    /**
+     * Get the SHA-256 digest of the jar file that the recorded classes belong to.
+     * It stays the same if the jar file is replaced on disk while the class loader is open.
+     *
+     * @return Lowercase hex encoded digest or null if the classes are not recorded
+     */
+    public String getRecordedJarDigest() {
+        return recordedJarDigest;
+    }
+
+    /**
+     * Get the names of all classes defined since {@link #recordClasses()} was called
+     *
+     * @return Read-only view of the recorded binary class names
+     */
+    public Set<String> getRecordedClasses() {
+        Set<String> recordedClasses = this.recordedClasses;
+        return recordedClasses == null ? Collections.emptySet() : Collections.unmodifiableSet(recordedClasses);
+    }
+
+    @Override
+    public URL getResource(String name) {
+        if (this.resourceMissCache.isAbsent(name)) {
+            return null;
+        }
+
+        // The parent and the jar file of this plugin first, then the depending plugins that contain the directory
+        URL resource = super.getResource(name);
+        List<PluginClassLoader> owners = this.dependencyPackages.get(packageOf(name, '/'));
+        if (owners != null) {
+            for (int i = 0; resource == null && i < owners.size(); i++) {
+                resource = owners.get(i).findResource(name);
+            }
+        }
+
+        if (resource == null) {
+            this.resourceMissCache.markAbsent(name);
+        }
+        return resource;
+    }
+
+    /**
+     * Forget all absent class and resource names.
+     * Called by the plugin loader whenever a plugin of the delegation graph changes.
+     */
+    public void invalidateLookupCaches() {
+        this.classMissCache.invalidate();
+        this.resourceMissCache.invalidate();
+    }
+
+    /**
+     * Remove all references to the class loader of an unloaded depending plugin
+     *
+     * @param dependency Class loader of the unloaded plugin
+     */
+    public synchronized void removeDependency(PluginClassLoader dependency) {
+        boolean changed = false;
+        Map<String, List<PluginClassLoader>> dependencyPackages = new HashMap<>();
+        for (Map.Entry<String, List<PluginClassLoader>> entry : this.dependencyPackages.entrySet()) {
+            if (!entry.getValue().contains(dependency)) {
+                dependencyPackages.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+
+            changed = true;
+            List<PluginClassLoader> owners = new ArrayList<>(entry.getValue());
+            owners.remove(dependency);
+            if (!owners.isEmpty()) {
+                dependencyPackages.put(entry.getKey(), Collections.unmodifiableList(owners));
+            }
+        }
+        if (!changed) {
+            return;
+        }
+
+        this.dependencyPackages = dependencyPackages;
+        invalidateLookupCaches();
+    }
+
+    /**
+     * Release all references of this class loader and close the jar file.
+     * Classes of the plugin can't be loaded anymore afterwards.
+     *
+     * @throws IOException Exception while closing the jar file
+     */
+    public synchronized void release() throws IOException {
+        this.plugin = null;
+        this.dependencyPackages = Collections.emptyMap();
+        invalidateLookupCaches();
+        close();
+    }
+
+    /**
+     * Get the cache of class names that are known to be absent
+     *
+     * @return Negative class lookup cache with hit and miss counters
+     */
+    public NegativeLookupCache getClassMissCache() {
+        return classMissCache;
+    }
+
+    /**
+     * Get the cache of resource names that are known to be absent
+     *
+     * @return Negative resource lookup cache with hit and miss counters
+     */
+    public NegativeLookupCache getResourceMissCache() {
+        return resourceMissCache;
+    }
+
+    /**
+     * Get the amount of classes defined by this class loader
+     *
+     * @return Amount of defined classes
+     */
+    public int getDefinedClasses() {
+        return this.definedClasses.get();
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        List<PluginClassLoader> owners = this.dependencyPackages.get(packageOf(name, '/'));
+        if (owners == null) {
+            return findLocalResources(name);
+        }
+
+        // Resources of this plugin first, then the resources of the depending plugins in order
+        List<URL> resources = new ArrayList<>(Collections.list(findLocalResources(name)));
+        for (PluginClassLoader owner : owners) {
+            resources.addAll(Collections.list(owner.findLocalResources(name)));
+        }
+        return Collections.enumeration(resources);
+    }
+
+    /**
+     * Find all resources with the given name in the jar file and the library jars of this plugin
+     *
+     * @param name Resource path
+     * @return Resources of the jar file followed by the resources of the library jars
+     * @throws IOException Exception while reading the jar file
+     */
+    private Enumeration<URL> findLocalResources(String name) throws IOException {
+        List<URL> libraryResources = this.libraries.getResources(name);
+        if (libraryResources.isEmpty()) {
+            return super.findResources(name);
+        }
+
+        // Resources of the jar file first, then the resources of the library jars
+        List<URL> resources = new ArrayList<>(Collections.list(super.findResources(name)));
+        resources.addAll(libraryResources);
+        return Collections.enumeration(resources);
+    }
+
+    /**
+     * Get the library jars in the lib directory of the jar file
+     *
+     * @return Index of the library jars
+     */
+    public NestedLibraryIndex getLibraries() {
+        return libraries;
     }
 
     /**
@@ -71,7 +503,7 @@ public class PluginClassLoader extends URLClassLoader {
      *
      * @return Created plugin instance
      */
-    public synchronized Plugin newInstance() throws Exception {
+    public Plugin newInstance() throws Exception {
         @SuppressWarnings("unchecked")
         Class<? extends Plugin> clazz = (Class<? extends Plugin>) Class.forName(meta.getMain(), true, this);
         Class<? extends Plugin> subClass = clazz.asSubclass(Plugin.class);
@@ -84,10 +516,47 @@ public class PluginClassLoader extends URLClassLoader {
      *
      * @param plugin Plugin instance
      */
-    synchronized void initialize(Plugin plugin) {
+    void initialize(Plugin plugin) {
         plugin.init(this.core, this.pluginLoader, this.meta, this.dataDirectory, this.file);
     }
 
+    /**
+     * Get the package name of a class or the directory of a resource in package notation
+     *
+     * @param name      Binary class name or resource path
+     * @param separator Separator of the name
+     * @return Package name or an empty string for the default package
+     */
+    private static String packageOf(String name, char separator) {
+        int index = name.lastIndexOf(separator);
+        if (index == -1) {
+            return "";
+        }
+        String packageName = name.substring(0, index);
+        return separator == '.' ? packageName : packageName.replace('/', '.');
+    }
+
+    /**
+     * Collect all packages and resource directories of the given jar file
+     *
+     * @param file Jar file to index
+     * @return Package names of all entries
+     * @throws IOException Exception while reading the jar file
+     */
+    private static Set<String> indexPackages(File file) throws IOException {
+        Set<String> packages = new HashSet<>();
+        try (JarFile jarFile = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.isDirectory()) {
+                    packages.add(packageOf(entry.getName(), '/'));
+                }
+            }
+        }
+        return packages;
+    }
+
     /**
      * Get plugin instance
      *
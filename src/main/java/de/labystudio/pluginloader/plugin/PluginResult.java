@@ -0,0 +1,159 @@
+package de.labystudio.pluginloader.plugin;
+
+import java.io.File;
+
+/**
+ * Result of loading or unloading a single plugin
+ *
+ * @author LabyStudio
+ */
+public class PluginResult {
+
+    /**
+     * Name of the plugin or null if the plugin meta couldn't be read
+     */
+    private final String pluginName;
+
+    /**
+     * Jar file of the plugin
+     */
+    private final File file;
+
+    /**
+     * Outcome of the operation
+     */
+    private final Status status;
+
+    /**
+     * The loaded plugin if the status is {@link Status#LOADED}
+     */
+    private final Plugin plugin;
+
+    /**
+     * Cause of the failure or null
+     */
+    private final Throwable cause;
+
+    /**
+     * Create plugin result
+     *
+     * @param pluginName Name of the plugin or null if the plugin meta couldn't be read
+     * @param file       Jar file of the plugin
+     * @param status     Outcome of the operation
+     * @param plugin     The loaded plugin or null
+     * @param cause      Cause of the failure or null
+     */
+    public PluginResult(String pluginName, File file, Status status, Plugin plugin, Throwable cause) {
+        this.pluginName = pluginName;
+        this.file = file;
+        this.status = status;
+        this.plugin = plugin;
+        this.cause = cause;
+    }
+
+    /**
+     * Get the name of the plugin
+     *
+     * @return Name of the plugin or null if the plugin meta couldn't be read
+     */
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    /**
+     * Get the jar file of the plugin
+     *
+     * @return Jar file of the plugin
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the outcome of the operation
+     *
+     * @return Outcome of the operation
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the loaded plugin
+     *
+     * @return The loaded plugin or null if the plugin is not loaded
+     */
+    public Plugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Get the cause of the failure
+     *
+     * @return Cause of the failure or null
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * Check if the operation succeeded
+     *
+     * @return True if the plugin was loaded, deferred or unloaded
+     */
+    public boolean isSuccess() {
+        return this.status == Status.LOADED || this.status == Status.DEFERRED || this.status == Status.UNLOADED;
+    }
+
+    @Override
+    public String toString() {
+        return this.pluginName + " (" + this.file.getName() + "): " + this.status
+                + (this.cause == null ? "" : " - " + this.cause);
+    }
+
+    /**
+     * Outcome of a plugin operation
+     */
+    public enum Status {
+
+        /**
+         * The plugin was enabled and registered
+         */
+        LOADED,
+
+        /**
+         * The plugin was registered without loading it and will be activated on first use
+         */
+        DEFERRED,
+
+        /**
+         * The plugin was disabled and unregistered
+         */
+        UNLOADED,
+
+        /**
+         * The plugin is waiting for depending plugins that are not loaded yet
+         */
+        WAITING,
+
+        /**
+         * The plugin was not loaded because a depending plugin failed to load
+         */
+        SKIPPED,
+
+        /**
+         * The plugin jar file is invalid or the plugin failed to enable or disable
+         */
+        FAILED,
+
+        /**
+         * The plugin jar file is not trusted or its signature is invalid, so it was not opened
+         */
+        VERIFICATION_FAILED,
+
+        /**
+         * The plugin did not finish enabling or disabling within the timeout
+         */
+        TIMED_OUT
+    }
+}
@@ -0,0 +1,133 @@
+package de.labystudio.pluginloader.plugin.dependency;
+
+import de.labystudio.pluginloader.plugin.meta.DependingPlugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of the dependency resolver.
+ * Contains the computed load order and all plugins that can't be loaded.
+ *
+ * @author LabyStudio
+ */
+public class DependencyResolution {
+
+    /**
+     * Load order of all resolvable plugins. All plugins of a wave only depend on plugins of previous waves.
+     */
+    private final List<List<DependingPlugin>> waves;
+
+    /**
+     * Plugins with missing dependencies mapped to the names of the missing plugins
+     */
+    private final Map<String, List<String>> missingDependencies;
+
+    /**
+     * Names of all plugins that are waiting for a plugin with missing dependencies or a plugin in a cycle
+     */
+    private final Set<String> blockedPlugins;
+
+    /**
+     * All dependency cycles. Each cycle contains the names of the plugins in the cycle.
+     */
+    private final List<List<String>> cycles;
+
+    /**
+     * Plugins that were ignored because another plugin with the same name was already part of the input
+     */
+    private final List<DependingPlugin> duplicates;
+
+    /**
+     * Create dependency resolution result
+     *
+     * @param waves               Load order of all resolvable plugins
+     * @param missingDependencies Plugins with missing dependencies mapped to the names of the missing plugins
+     * @param blockedPlugins      Names of all plugins that are waiting for an unresolvable plugin
+     * @param cycles              All dependency cycles
+     * @param duplicates          Plugins that were ignored because of a duplicate name
+     */
+    public DependencyResolution(List<List<DependingPlugin>> waves,
+                                Map<String, List<String>> missingDependencies,
+                                Set<String> blockedPlugins,
+                                List<List<String>> cycles,
+                                List<DependingPlugin> duplicates) {
+        this.waves = waves;
+        this.missingDependencies = missingDependencies;
+        this.blockedPlugins = blockedPlugins;
+        this.cycles = cycles;
+        this.duplicates = duplicates;
+    }
+
+    /**
+     * Get the load order in waves. All plugins of a wave only depend on plugins of previous waves
+     * and can be loaded at the same time.
+     *
+     * @return Load order in waves
+     */
+    public List<List<DependingPlugin>> getWaves() {
+        return Collections.unmodifiableList(this.waves);
+    }
+
+    /**
+     * Get the flat load order of all resolvable plugins
+     *
+     * @return Flat load order
+     */
+    public List<DependingPlugin> getLoadOrder() {
+        List<DependingPlugin> loadOrder = new ArrayList<>();
+        for (List<DependingPlugin> wave : this.waves) {
+            loadOrder.addAll(wave);
+        }
+        return loadOrder;
+    }
+
+    /**
+     * Get all plugins with missing dependencies mapped to the names of the missing plugins
+     *
+     * @return Plugins with missing dependencies
+     */
+    public Map<String, List<String>> getMissingDependencies() {
+        return Collections.unmodifiableMap(this.missingDependencies);
+    }
+
+    /**
+     * Get the names of all plugins that are waiting for a plugin with missing dependencies or a plugin in a cycle
+     *
+     * @return Names of blocked plugins
+     */
+    public Set<String> getBlockedPlugins() {
+        return Collections.unmodifiableSet(this.blockedPlugins);
+    }
+
+    /**
+     * Get all dependency cycles. Each cycle contains the names of the plugins in the cycle.
+     *
+     * @return Dependency cycles
+     */
+    public List<List<String>> getCycles() {
+        return Collections.unmodifiableList(this.cycles);
+    }
+
+    /**
+     * Get all plugins that were ignored because another plugin with the same name was already part of the input
+     *
+     * @return Ignored duplicate plugins
+     */
+    public List<DependingPlugin> getDuplicates() {
+        return Collections.unmodifiableList(this.duplicates);
+    }
+
+    /**
+     * Check if all plugins of the input are resolvable
+     *
+     * @return True if there are no missing dependencies, cycles or duplicates
+     */
+    public boolean isComplete() {
+        return this.missingDependencies.isEmpty() && this.blockedPlugins.isEmpty()
+                && this.cycles.isEmpty() && this.duplicates.isEmpty();
+    }
+}
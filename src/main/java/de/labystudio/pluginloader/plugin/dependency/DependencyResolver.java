@@ -0,0 +1,210 @@
+package de.labystudio.pluginloader.plugin.dependency;
+
+import de.labystudio.pluginloader.plugin.meta.DependingPlugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Dependency resolver to compute the load order of plugins.
+ * The resolver uses Kahn's algorithm and runs in linear time of the plugins and their dependencies.
+ *
+ * @author LabyStudio
+ */
+public class DependencyResolver {
+
+    /**
+     * Compute the load order of the given plugins
+     *
+     * @param plugins   Plugins to resolve in their preferred order
+     * @param available Check if a dependency that is not part of the given plugins is already available
+     * @return Resolution with the load order in waves and all unresolvable plugins
+     */
+    public DependencyResolution resolve(Collection<DependingPlugin> plugins, Predicate<String> available) {
+        // Index all plugins by name
+        List<DependingPlugin> nodes = new ArrayList<>(plugins.size());
+        List<DependingPlugin> duplicates = new ArrayList<>();
+        Map<String, Integer> indexByName = new HashMap<>();
+        for (DependingPlugin plugin : plugins) {
+            String name = plugin.getMeta().getName();
+            if (indexByName.containsKey(name)) {
+                duplicates.add(plugin);
+                continue;
+            }
+            indexByName.put(name, nodes.size());
+            nodes.add(plugin);
+        }
+
+        int size = nodes.size();
+        int[] indegree = new int[size];
+        List<List<Integer>> dependents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            dependents.add(new ArrayList<>(0));
+        }
+
+        // Build the edges from each dependency to its dependent plugins
+        Map<String, List<String>> missingDependencies = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            DependingPlugin plugin = nodes.get(i);
+            for (String depend : new HashSet<>(Arrays.asList(plugin.getDepends()))) {
+                Integer dependIndex = indexByName.get(depend);
+                if (dependIndex != null) {
+                    dependents.get(dependIndex).add(i);
+                    indegree[i]++;
+                } else if (!available.test(depend)) {
+                    missingDependencies.computeIfAbsent(plugin.getMeta().getName(), k -> new ArrayList<>()).add(depend);
+                }
+            }
+        }
+
+        // Plugins with missing dependencies and all of their dependents are blocked
+        boolean[] blocked = new boolean[size];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (String name : missingDependencies.keySet()) {
+            int index = indexByName.get(name);
+            blocked[index] = true;
+            queue.add(index);
+        }
+        Set<String> blockedPlugins = new HashSet<>();
+        while (!queue.isEmpty()) {
+            for (int dependent : dependents.get(queue.poll())) {
+                if (!blocked[dependent]) {
+                    blocked[dependent] = true;
+                    blockedPlugins.add(nodes.get(dependent).getMeta().getName());
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        // Kahn's algorithm, one wave at a time
+        boolean[] resolved = new boolean[size];
+        List<List<DependingPlugin>> waves = new ArrayList<>();
+        List<Integer> wave = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (indegree[i] == 0 && !blocked[i]) {
+                wave.add(i);
+            }
+        }
+        while (!wave.isEmpty()) {
+            List<DependingPlugin> wavePlugins = new ArrayList<>(wave.size());
+            List<Integer> nextWave = new ArrayList<>();
+            for (int index : wave) {
+                resolved[index] = true;
+                wavePlugins.add(nodes.get(index));
+
+                for (int dependent : dependents.get(index)) {
+                    if (--indegree[dependent] == 0 && !blocked[dependent]) {
+                        nextWave.add(dependent);
+                    }
+                }
+            }
+            waves.add(wavePlugins);
+            wave = nextWave;
+        }
+
+        // All remaining plugins are part of a cycle or depend on one
+        List<List<String>> cycles = findCycles(nodes, dependents, resolved, blocked);
+        Set<String> cyclicPlugins = new HashSet<>();
+        for (List<String> cycle : cycles) {
+            cyclicPlugins.addAll(cycle);
+        }
+        for (int i = 0; i < size; i++) {
+            String name = nodes.get(i).getMeta().getName();
+            if (!resolved[i] && !blocked[i] && !cyclicPlugins.contains(name)) {
+                blockedPlugins.add(name);
+            }
+        }
+
+        return new DependencyResolution(waves, missingDependencies, blockedPlugins, cycles, duplicates);
+    }
+
+    /**
+     * Find all dependency cycles in the unresolved plugins using Tarjan's strongly connected components algorithm
+     *
+     * @param nodes      All plugins
+     * @param dependents Edges from each plugin to its dependents
+     * @param resolved   Plugins that are part of the load order
+     * @param blocked    Plugins with missing dependencies
+     * @return Names of the plugins of each cycle
+     */
+    private List<List<String>> findCycles(List<DependingPlugin> nodes, List<List<Integer>> dependents,
+                                          boolean[] resolved, boolean[] blocked) {
+        int size = nodes.size();
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        int[] edgePosition = new int[size];
+        boolean[] onStack = new boolean[size];
+        Arrays.fill(index, -1);
+
+        Deque<Integer> stack = new ArrayDeque<>();
+        Deque<Integer> callStack = new ArrayDeque<>();
+        List<List<String>> cycles = new ArrayList<>();
+        int counter = 0;
+
+        for (int root = 0; root < size; root++) {
+            if (resolved[root] || blocked[root] || index[root] != -1) {
+                continue;
+            }
+
+            // Iterative depth first search to support deep dependency chains
+            callStack.push(root);
+            index[root] = lowLink[root] = counter++;
+            stack.push(root);
+            onStack[root] = true;
+
+            while (!callStack.isEmpty()) {
+                int node = callStack.peek();
+                List<Integer> edges = dependents.get(node);
+
+                if (edgePosition[node] < edges.size()) {
+                    int next = edges.get(edgePosition[node]++);
+                    if (resolved[next] || blocked[next]) {
+                        continue;
+                    }
+                    if (index[next] == -1) {
+                        index[next] = lowLink[next] = counter++;
+                        stack.push(next);
+                        onStack[next] = true;
+                        callStack.push(next);
+                    } else if (onStack[next]) {
+                        lowLink[node] = Math.min(lowLink[node], index[next]);
+                    }
+                    continue;
+                }
+
+                callStack.pop();
+                if (!callStack.isEmpty()) {
+                    int parent = callStack.peek();
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+
+                if (lowLink[node] == index[node]) {
+                    List<String> component = new ArrayList<>();
+                    int member;
+                    do {
+                        member = stack.pop();
+                        onStack[member] = false;
+                        component.add(nodes.get(member).getMeta().getName());
+                    } while (member != node);
+
+                    // A single plugin is only a cycle if it depends on itself
+                    if (component.size() > 1 || dependents.get(node).contains(node)) {
+                        cycles.add(component);
+                    }
+                }
+            }
+        }
+
+        return cycles;
+    }
+}
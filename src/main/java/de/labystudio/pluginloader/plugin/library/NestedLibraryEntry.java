@@ -0,0 +1,102 @@
+package de.labystudio.pluginloader.plugin.library;
+
+import de.labystudio.pluginloader.util.ByteBufferInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * File entry of a library jar that is nested in a plugin jar
+ *
+ * @author LabyStudio
+ */
+public class NestedLibraryEntry {
+
+    /**
+     * Path of the library jar in the plugin jar
+     */
+    private final String libraryName;
+
+    /**
+     * Path of the entry in the library jar
+     */
+    private final String name;
+
+    /**
+     * Complete library jar in memory
+     */
+    private final ByteBuffer library;
+
+    /**
+     * Location of the entry in the library jar
+     */
+    private final ZipDirectory.Entry entry;
+
+    /**
+     * Create nested library entry
+     *
+     * @param libraryName Path of the library jar in the plugin jar
+     * @param name        Path of the entry in the library jar
+     * @param library     Complete library jar in memory
+     * @param entry       Location of the entry in the library jar
+     */
+    NestedLibraryEntry(String libraryName, String name, ByteBuffer library, ZipDirectory.Entry entry) {
+        this.libraryName = libraryName;
+        this.name = name;
+        this.library = library;
+        this.entry = entry;
+    }
+
+    /**
+     * Get the uncompressed content of the entry.
+     * Stored entries are returned as a read-only view of the library jar without copying them.
+     *
+     * @return Buffer with the content of the entry
+     * @throws IOException If the entry is corrupt
+     */
+    public ByteBuffer getContent() throws IOException {
+        ByteBuffer data = this.entry.slice(this.library);
+        if (this.entry.method == ZipDirectory.STORED) {
+            return data.asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(NestedLibraryIndex.inflate(data, this.entry.size, this.libraryName + "!/" + this.name));
+    }
+
+    /**
+     * Open a stream of the uncompressed content of the entry
+     *
+     * @return Input stream of the content
+     * @throws IOException If the entry is corrupt
+     */
+    public InputStream openStream() throws IOException {
+        return new ByteBufferInputStream(getContent());
+    }
+
+    /**
+     * Get the path of the library jar in the plugin jar
+     *
+     * @return Library jar path
+     */
+    public String getLibraryName() {
+        return libraryName;
+    }
+
+    /**
+     * Get the path of the entry in the library jar
+     *
+     * @return Entry path
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the uncompressed size of the entry
+     *
+     * @return Size in bytes
+     */
+    public int getSize() {
+        return this.entry.size;
+    }
+}
@@ -0,0 +1,410 @@
+package de.labystudio.pluginloader.plugin.library;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of all library jars in the lib directory of a plugin jar.
+ * The library jars are copied into memory once, their entries are read from there without extracting them to the disk.
+ * The plugin jar is not kept open, so it can be replaced or truncated while the index is in use.
+ * Indexes are shared by all class loaders of the same unchanged plugin jar.
+ *
+ * @author LabyStudio
+ */
+public class NestedLibraryIndex {
+
+    /**
+     * Directory of the library jars in the plugin jar
+     */
+    public static final String LIBRARY_DIRECTORY = "lib/";
+
+    /**
+     * Protocol of the resource urls of nested library entries
+     */
+    private static final String PROTOCOL = "pluginlib";
+
+    /**
+     * Maximum amount of idle inflaters to keep for reuse
+     */
+    private static final int INFLATER_POOL_SIZE = 16;
+
+    /**
+     * Index of a plugin jar without library jars
+     */
+    public static final NestedLibraryIndex EMPTY = new NestedLibraryIndex(null, Collections.emptyMap());
+
+    /**
+     * Indexes of all plugin jars that are still in use by their absolute path
+     */
+    private static final Map<String, CachedIndex> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Idle inflaters for compressed entries
+     */
+    private static final Queue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Plugin jar file
+     */
+    private final File file;
+
+    /**
+     * Entries of each library jar by the library path and the entry path
+     */
+    private final Map<String, Map<String, NestedLibraryEntry>> libraries;
+
+    /**
+     * Entries of all library jars by the entry path. The first library jar in alphabetical order wins.
+     */
+    private final Map<String, NestedLibraryEntry> entries = new HashMap<>();
+
+    /**
+     * All packages and resource directories of the library jars
+     */
+    private final Set<String> packages = new HashSet<>();
+
+    /**
+     * Url handler to read the nested entries as resources
+     */
+    private final URLStreamHandler urlHandler = new NestedLibraryURLHandler();
+
+    /**
+     * Create index
+     *
+     * @param file      Plugin jar file
+     * @param libraries Entries of each library jar by the library path and the entry path
+     */
+    private NestedLibraryIndex(File file, Map<String, Map<String, NestedLibraryEntry>> libraries) {
+        this.file = file;
+        this.libraries = libraries;
+
+        for (Map<String, NestedLibraryEntry> library : libraries.values()) {
+            for (NestedLibraryEntry entry : library.values()) {
+                this.entries.putIfAbsent(entry.getName(), entry);
+
+                int index = entry.getName().lastIndexOf('/');
+                this.packages.add(index == -1 ? "" : entry.getName().substring(0, index).replace('/', '.'));
+            }
+        }
+    }
+
+    /**
+     * Get the index of the library jars of the given plugin jar.
+     * The index is reused as long as the plugin jar is unchanged and any class loader still uses it.
+     *
+     * @param jarFile Plugin jar file
+     * @return Index of all library jars in the lib directory
+     * @throws IOException If the plugin jar or a library jar is corrupt
+     */
+    public static NestedLibraryIndex of(File jarFile) throws IOException {
+        String key = jarFile.getAbsolutePath();
+        long size = jarFile.length();
+        long lastModified = jarFile.lastModified();
+
+        CachedIndex cached = CACHE.get(key);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            NestedLibraryIndex index = cached.index.get();
+            if (index != null) {
+                return index;
+            }
+        }
+
+        NestedLibraryIndex index = scan(jarFile);
+        CACHE.put(key, new CachedIndex(size, lastModified, index));
+        return index;
+    }
+
+    /**
+     * Copy all library jars in the lib directory of the plugin jar into memory and index them.
+     * The plugin jar is closed afterwards, a memory mapping would crash the class loader if the jar is truncated
+     * and prevents replacing the jar on Windows.
+     *
+     * @param jarFile Plugin jar file
+     * @return Index of all library jars
+     * @throws IOException If the plugin jar or a library jar is corrupt
+     */
+    private static NestedLibraryIndex scan(File jarFile) throws IOException {
+        // Library jars in alphabetical order
+        Map<String, byte[]> libraryContents = new TreeMap<>();
+        try (ZipFile zipFile = new ZipFile(jarFile)) {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry entry = zipEntries.nextElement();
+                String name = entry.getName();
+                if (name.startsWith(LIBRARY_DIRECTORY) && name.endsWith(".jar") && name.indexOf('/', LIBRARY_DIRECTORY.length()) == -1) {
+                    libraryContents.put(name, read(zipFile, entry, jarFile.getName() + "!/" + name));
+                }
+            }
+        }
+        if (libraryContents.isEmpty()) {
+            return EMPTY;
+        }
+
+        Map<String, Map<String, NestedLibraryEntry>> libraries = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> libraryContent : libraryContents.entrySet()) {
+            String libraryName = libraryContent.getKey();
+            ByteBuffer library = ByteBuffer.wrap(libraryContent.getValue());
+
+            Map<String, NestedLibraryEntry> entries = new LinkedHashMap<>();
+            for (Map.Entry<String, ZipDirectory.Entry> entry : ZipDirectory.read(library, jarFile.getName() + "!/" + libraryName).entrySet()) {
+                entries.put(entry.getKey(), new NestedLibraryEntry(libraryName, entry.getKey(), library, entry.getValue()));
+            }
+            libraries.put(libraryName, entries);
+        }
+        return new NestedLibraryIndex(jarFile, libraries);
+    }
+
+    /**
+     * Read the uncompressed content of the given zip entry
+     *
+     * @param zipFile Zip file of the entry
+     * @param entry   Entry to read
+     * @param name    Name of the entry for error messages
+     * @return Content of the entry
+     * @throws IOException If the entry is corrupt or too large
+     */
+    private static byte[] read(ZipFile zipFile, ZipEntry entry, String name) throws IOException {
+        long size = entry.getSize();
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new IOException("Unsupported size of library jar " + name);
+        }
+
+        byte[] content = new byte[(int) size];
+        try (DataInputStream stream = new DataInputStream(zipFile.getInputStream(entry))) {
+            stream.readFully(content);
+        }
+        return content;
+    }
+
+    /**
+     * Inflate the given deflated data
+     *
+     * @param data Deflated data
+     * @param size Size of the inflated data
+     * @param name Name of the entry for error messages
+     * @return Inflated data
+     * @throws IOException If the data is corrupt
+     */
+    static byte[] inflate(ByteBuffer data, int size, String name) throws IOException {
+        byte[] input;
+        int offset;
+        int length = data.remaining();
+        if (data.hasArray()) {
+            input = data.array();
+            offset = data.arrayOffset() + data.position();
+        } else {
+            input = new byte[length];
+            data.duplicate().get(input);
+            offset = 0;
+        }
+
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        try {
+            inflater.setInput(input, offset, length);
+
+            byte[] output = new byte[size];
+            int inflated = 0;
+            boolean padded = false;
+            while (inflated < size) {
+                int read = inflater.inflate(output, inflated, size - inflated);
+                if (read == 0) {
+                    if (inflater.finished() || inflater.needsDictionary() || !inflater.needsInput() || padded) {
+                        break;
+                    }
+
+                    // Raw deflate data may need an additional padding byte
+                    inflater.setInput(new byte[1]);
+                    padded = true;
+                }
+                inflated += read;
+            }
+            if (inflated != size) {
+                throw new IOException("Corrupt entry " + name);
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt entry " + name, e);
+        } finally {
+            inflater.reset();
+            if (INFLATERS.size() < INFLATER_POOL_SIZE) {
+                INFLATERS.offer(inflater);
+            } else {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Find the entry of the given path in the library jars
+     *
+     * @param name Path of the entry, for example "com/example/Library.class"
+     * @return Entry of the first library jar that contains the path or null if no library jar contains it
+     */
+    public NestedLibraryEntry getEntry(String name) {
+        return this.entries.get(name);
+    }
+
+    /**
+     * Get the resource urls of the given path in all library jars
+     *
+     * @param name Path of the resource
+     * @return Resource urls in alphabetical order of the library jars
+     */
+    public List<URL> getResources(String name) {
+        if (!this.entries.containsKey(name)) {
+            return Collections.emptyList();
+        }
+
+        List<URL> resources = new ArrayList<>();
+        for (Map<String, NestedLibraryEntry> library : this.libraries.values()) {
+            NestedLibraryEntry entry = library.get(name);
+            if (entry != null) {
+                resources.add(toURL(entry));
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * Get the resource url of the given entry
+     *
+     * @param entry Entry of a library jar of this index
+     * @return Url that reads the entry from memory
+     */
+    public URL toURL(NestedLibraryEntry entry) {
+        try {
+            return new URL(PROTOCOL, null, -1, this.file.toURI().getRawPath() + "!/" + entry.getLibraryName() + "!/" + entry.getName(), this.urlHandler);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get all packages and resource directories of the library jars
+     *
+     * @return Package names
+     */
+    public Set<String> getPackages() {
+        return Collections.unmodifiableSet(this.packages);
+    }
+
+    /**
+     * Get the paths of all library jars in the plugin jar
+     *
+     * @return Library jar paths in alphabetical order
+     */
+    public Set<String> getLibraries() {
+        return Collections.unmodifiableSet(this.libraries.keySet());
+    }
+
+    /**
+     * Check if the plugin jar contains no library jars
+     *
+     * @return True if there are no library jars
+     */
+    public boolean isEmpty() {
+        return this.libraries.isEmpty();
+    }
+
+    /**
+     * Url handler that reads the entries of this index from memory
+     */
+    private class NestedLibraryURLHandler extends URLStreamHandler {
+
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            // Format is <plugin jar>!/<library jar>!/<entry>
+            String path = url.getPath();
+            int entryStart = path.indexOf("!/", path.indexOf("!/") + 2);
+            int libraryStart = path.indexOf("!/") + 2;
+            if (libraryStart < 2 || entryStart == -1) {
+                throw new IOException("Invalid nested library url " + url);
+            }
+
+            Map<String, NestedLibraryEntry> library = libraries.get(path.substring(libraryStart, entryStart));
+            NestedLibraryEntry entry = library == null ? null : library.get(path.substring(entryStart + 2));
+            if (entry == null) {
+                throw new IOException("Nested library entry not found: " + url);
+            }
+
+            return new URLConnection(url) {
+                @Override
+                public void connect() {
+                    this.connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return entry.openStream();
+                }
+
+                @Override
+                public long getContentLengthLong() {
+                    return entry.getSize();
+                }
+            };
+        }
+    }
+
+    /**
+     * Cached index of a plugin jar
+     */
+    private static class CachedIndex {
+
+        /**
+         * Size of the plugin jar when it was indexed
+         */
+        private final long size;
+
+        /**
+         * Last modification time of the plugin jar when it was indexed
+         */
+        private final long lastModified;
+
+        /**
+         * The index. Released as soon as no class loader uses it anymore.
+         */
+        private final WeakReference<NestedLibraryIndex> index;
+
+        /**
+         * Create cached index
+         *
+         * @param size         Size of the plugin jar
+         * @param lastModified Last modification time of the plugin jar
+         * @param index        The index
+         */
+        private CachedIndex(long size, long lastModified, NestedLibraryIndex index) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.index = new WeakReference<>(index);
+        }
+    }
+}
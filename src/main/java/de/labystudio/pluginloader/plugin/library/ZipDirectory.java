@@ -0,0 +1,195 @@
+package de.labystudio.pluginloader.plugin.library;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the central directory of a zip archive that is completely available in a byte buffer.
+ * Entries are located without copying or inflating anything.
+ *
+ * @author LabyStudio
+ */
+final class ZipDirectory {
+
+    /**
+     * Signature of the end of central directory record
+     */
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    /**
+     * Signature of a central directory file header
+     */
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    /**
+     * Signature of a local file header
+     */
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    /**
+     * Size of the end of central directory record without the comment
+     */
+    private static final int END_SIZE = 22;
+
+    /**
+     * Size of a central directory file header without the name, extra field and comment
+     */
+    private static final int CENTRAL_SIZE = 46;
+
+    /**
+     * Size of a local file header without the name and extra field
+     */
+    private static final int LOCAL_SIZE = 30;
+
+    /**
+     * Marker of sizes and offsets that are stored in a zip64 extra field
+     */
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+    /**
+     * Compression method of uncompressed entries
+     */
+    static final int STORED = 0;
+
+    /**
+     * Compression method of deflated entries
+     */
+    static final int DEFLATED = 8;
+
+    private ZipDirectory() {
+    }
+
+    /**
+     * Read all file entries of the given zip archive.
+     * Directories, encrypted entries, zip64 entries and unsupported compression methods are skipped.
+     *
+     * @param archive Complete zip archive. The buffer itself is not modified.
+     * @param name    Name of the archive for error messages
+     * @return All file entries by their name in the order of the central directory
+     * @throws IOException If the archive is not a valid zip archive
+     */
+    static Map<String, Entry> read(ByteBuffer archive, String name) throws IOException {
+        ByteBuffer buffer = archive.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(0);
+
+        // The end record is followed by a comment of up to 65535 bytes
+        int end = -1;
+        for (int position = buffer.limit() - END_SIZE; position >= Math.max(0, buffer.limit() - END_SIZE - 0xFFFF); position--) {
+            if (buffer.getInt(position) == END_SIGNATURE) {
+                end = position;
+                break;
+            }
+        }
+        if (end == -1) {
+            throw new IOException("Missing central directory in " + name);
+        }
+
+        int entries = buffer.getShort(end + 10) & 0xFFFF;
+        long directoryOffset = buffer.getInt(end + 16) & ZIP64_MARKER;
+        if (directoryOffset == ZIP64_MARKER || directoryOffset > end) {
+            throw new IOException("Unsupported zip64 archive " + name);
+        }
+
+        Map<String, Entry> result = new LinkedHashMap<>(entries * 2);
+        int position = (int) directoryOffset;
+        for (int i = 0; i < entries; i++) {
+            if (position + CENTRAL_SIZE > end || buffer.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new IOException("Corrupt central directory in " + name);
+            }
+
+            int flags = buffer.getShort(position + 8) & 0xFFFF;
+            int method = buffer.getShort(position + 10) & 0xFFFF;
+            long compressedSize = buffer.getInt(position + 20) & ZIP64_MARKER;
+            long size = buffer.getInt(position + 24) & ZIP64_MARKER;
+            int nameLength = buffer.getShort(position + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(position + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(position + 32) & 0xFFFF;
+            long localOffset = buffer.getInt(position + 42) & ZIP64_MARKER;
+
+            byte[] nameBytes = new byte[nameLength];
+            ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(position + CENTRAL_SIZE);
+            nameBuffer.get(nameBytes);
+            String entryName = new String(nameBytes, StandardCharsets.UTF_8);
+
+            position += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+
+            boolean encrypted = (flags & 1) != 0;
+            boolean zip64 = compressedSize == ZIP64_MARKER || size == ZIP64_MARKER || localOffset == ZIP64_MARKER;
+            if (entryName.endsWith("/") || encrypted || zip64 || (method != STORED && method != DEFLATED)) {
+                continue;
+            }
+
+            // The data starts after the local header that may have a different extra field
+            int local = (int) localOffset;
+            if (local + LOCAL_SIZE > buffer.limit() || buffer.getInt(local) != LOCAL_SIGNATURE) {
+                throw new IOException("Corrupt local header of " + entryName + " in " + name);
+            }
+            long dataOffset = local + LOCAL_SIZE + (buffer.getShort(local + 26) & 0xFFFF) + (buffer.getShort(local + 28) & 0xFFFF);
+            if (dataOffset + compressedSize > buffer.limit()) {
+                throw new IOException("Truncated entry " + entryName + " in " + name);
+            }
+
+            result.putIfAbsent(entryName, new Entry(method, (int) dataOffset, (int) compressedSize, (int) size));
+        }
+        return result;
+    }
+
+    /**
+     * Location of a file entry in the archive buffer
+     */
+    static final class Entry {
+
+        /**
+         * Compression method, {@link #STORED} or {@link #DEFLATED}
+         */
+        final int method;
+
+        /**
+         * Position of the entry data in the archive buffer
+         */
+        final int dataOffset;
+
+        /**
+         * Size of the entry data in the archive buffer
+         */
+        final int compressedSize;
+
+        /**
+         * Size of the uncompressed content
+         */
+        final int size;
+
+        /**
+         * Create entry location
+         *
+         * @param method         Compression method
+         * @param dataOffset     Position of the entry data in the archive buffer
+         * @param compressedSize Size of the entry data in the archive buffer
+         * @param size           Size of the uncompressed content
+         */
+        Entry(int method, int dataOffset, int compressedSize, int size) {
+            this.method = method;
+            this.dataOffset = dataOffset;
+            this.compressedSize = compressedSize;
+            this.size = size;
+        }
+
+        /**
+         * Get a view of the entry data in the given archive buffer
+         *
+         * @param archive Archive buffer that contains the entry
+         * @return Buffer with the compressed or stored data of the entry
+         */
+        ByteBuffer slice(ByteBuffer archive) {
+            ByteBuffer data = archive.duplicate();
+            data.limit(this.dataOffset + this.compressedSize);
+            data.position(this.dataOffset);
+            return data.slice();
+        }
+    }
+}
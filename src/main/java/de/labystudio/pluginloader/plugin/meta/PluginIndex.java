@@ -0,0 +1,251 @@
+package de.labystudio.pluginloader.plugin.meta;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import de.labystudio.pluginloader.PluginLoaderLogger;
+import de.labystudio.pluginloader.util.FileDigest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent index of the plugin meta of all jar files in the plugin directory.
+ * Jar files with the same size and modification time are resolved without opening them.
+ *
+ * @author LabyStudio
+ */
+public class PluginIndex {
+
+    /**
+     * Gson instance to read and write the index file
+     */
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Version of the index file format. Index files of other versions are rebuilt.
+     * Must be increased whenever the fields of the serialized {@link PluginMeta} change.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Index file location
+     */
+    private final File file;
+
+    /**
+     * Compare the content hash of the jar files in addition to the size and modification time
+     */
+    private final boolean contentHash;
+
+    /**
+     * All indexed jar files by their file name
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * True if the index changed since it was loaded
+     */
+    private volatile boolean dirty;
+
+    /**
+     * Create an empty plugin index
+     *
+     * @param file        Index file location
+     * @param contentHash Compare the content hash of the jar files in addition to the size and modification time
+     */
+    private PluginIndex(File file, boolean contentHash) {
+        this.file = file;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Load the plugin index from the given file.
+     * A missing, outdated or corrupt index file results in an empty index that is rebuilt transparently.
+     *
+     * @param file        Index file location
+     * @param contentHash Compare the content hash of the jar files in addition to the size and modification time
+     * @param logger      Logger to report a corrupt index file
+     * @return Loaded plugin index
+     */
+    public static PluginIndex load(File file, boolean contentHash, PluginLoaderLogger logger) {
+        PluginIndex index = new PluginIndex(file, contentHash);
+        if (!file.exists()) {
+            return index;
+        }
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Storage storage = GSON.fromJson(reader, Storage.class);
+            if (storage == null || storage.version != VERSION || storage.entries == null) {
+                index.dirty = true;
+                return index;
+            }
+
+            for (Entry entry : storage.entries) {
+                if (entry != null && entry.fileName != null) {
+                    index.entries.put(entry.fileName, entry);
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.log("Rebuilding corrupt plugin index " + file.getName() + ": " + e.getMessage());
+            index.entries.clear();
+            index.dirty = true;
+        }
+        return index;
+    }
+
+    /**
+     * Get the indexed entry of the given jar file if the jar file is unchanged
+     *
+     * @param jarFile Jar file to lookup
+     * @return Index entry or null if the jar file is not indexed or changed
+     * @throws IOException Exception while hashing the jar file
+     */
+    public Entry lookup(File jarFile) throws IOException {
+        Entry entry = this.entries.get(jarFile.getName());
+        if (entry == null || entry.size != jarFile.length() || entry.lastModified != jarFile.lastModified()) {
+            return null;
+        }
+        if (this.contentHash && (entry.hash == null || !entry.hash.equals(FileDigest.sha256(jarFile)))) {
+            return null;
+        }
+        if (entry.meta != null && (entry.meta.getName() == null || entry.meta.getMain() == null)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Store the plugin meta of the given jar file in the index
+     *
+     * @param jarFile Jar file
+     * @param meta    Plugin meta of the jar file or null if the jar file is not a plugin
+     * @throws IOException Exception while hashing the jar file
+     */
+    public void update(File jarFile, PluginMeta meta) throws IOException {
+        String hash = this.contentHash ? FileDigest.sha256(jarFile) : null;
+        this.entries.put(jarFile.getName(), new Entry(jarFile.getName(), jarFile.length(), jarFile.lastModified(), hash, meta));
+        this.dirty = true;
+    }
+
+    /**
+     * Remove all entries of jar files that are not in the given collection
+     *
+     * @param jarFiles All existing jar files
+     */
+    public void retain(Collection<File> jarFiles) {
+        Set<String> fileNames = new HashSet<>();
+        for (File jarFile : jarFiles) {
+            fileNames.add(jarFile.getName());
+        }
+        if (this.entries.keySet().retainAll(fileNames)) {
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * Write the index to the index file if it changed.
+     * The file is replaced atomically to never leave a partially written index.
+     *
+     * @throws IOException Exception while writing the index file
+     */
+    public void save() throws IOException {
+        if (!this.dirty) {
+            return;
+        }
+
+        Storage storage = new Storage();
+        storage.version = VERSION;
+        storage.entries = new ArrayList<>(this.entries.values());
+
+        Path target = this.file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            GSON.toJson(storage, writer);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        this.dirty = false;
+    }
+
+    /**
+     * Indexed jar file
+     */
+    public static class Entry {
+
+        /**
+         * File name of the jar file in the plugin directory
+         */
+        private final String fileName;
+
+        /**
+         * Size of the jar file in bytes
+         */
+        private final long size;
+
+        /**
+         * Last modification time of the jar file
+         */
+        private final long lastModified;
+
+        /**
+         * SHA-256 digest of the jar file or null if content hashing is disabled
+         */
+        private final String hash;
+
+        /**
+         * Plugin meta of the jar file or null if the jar file contains no plugin meta file
+         */
+        private final PluginMeta meta;
+
+        /**
+         * Create index entry
+         *
+         * @param fileName     File name of the jar file in the plugin directory
+         * @param size         Size of the jar file in bytes
+         * @param lastModified Last modification time of the jar file
+         * @param hash         SHA-256 digest of the jar file or null
+         * @param meta         Plugin meta of the jar file or null
+         */
+        public Entry(String fileName, long size, long lastModified, String hash, PluginMeta meta) {
+            this.fileName = fileName;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.meta = meta;
+        }
+
+        /**
+         * Get the plugin meta of the jar file
+         *
+         * @return Plugin meta or null if the jar file contains no plugin meta file
+         */
+        public PluginMeta getMeta() {
+            return meta;
+        }
+    }
+
+    /**
+     * Serialized form of the index file
+     */
+    private static class Storage {
+        private int version;
+        private List<Entry> entries;
+    }
+}
@@ -32,6 +32,16 @@ public class PluginMeta {
      */
     private String[] depends;
 
+    /**
+     * Register the plugin without loading it. The plugin is activated on first use.
+     */
+    private boolean lazy;
+
+    /**
+     * Amount of threads of the plugin executor. Zero to use the default of the plugin loader.
+     */
+    private int threads;
+
     /**
      * Create plugin meta instance
      *
@@ -43,6 +53,54 @@ public class PluginMeta {
         this.main = main;
     }
 
+    /**
+     * Create plugin meta instance
+     *
+     * @param name        Unique name of the plugin
+     * @param main        Main class path
+     * @param authors     Author names
+     * @param description Plugin description
+     * @param depends     Names of depending plugins
+     */
+    public PluginMeta(String name, String main, String[] authors, String description, String[] depends) {
+        this(name, main, authors, description, depends, false);
+    }
+
+    /**
+     * Create plugin meta instance
+     *
+     * @param name        Unique name of the plugin
+     * @param main        Main class path
+     * @param authors     Author names
+     * @param description Plugin description
+     * @param depends     Names of depending plugins
+     * @param lazy        Register the plugin without loading it and activate it on first use
+     */
+    public PluginMeta(String name, String main, String[] authors, String description, String[] depends, boolean lazy) {
+        this(name, main, authors, description, depends, lazy, 0);
+    }
+
+    /**
+     * Create plugin meta instance
+     *
+     * @param name        Unique name of the plugin
+     * @param main        Main class path
+     * @param authors     Author names
+     * @param description Plugin description
+     * @param depends     Names of depending plugins
+     * @param lazy        Register the plugin without loading it and activate it on first use
+     * @param threads     Amount of threads of the plugin executor or zero to use the default of the plugin loader
+     */
+    public PluginMeta(String name, String main, String[] authors, String description, String[] depends, boolean lazy, int threads) {
+        this.name = name;
+        this.main = main;
+        this.authors = authors;
+        this.description = description;
+        this.depends = depends;
+        this.lazy = lazy;
+        this.threads = threads;
+    }
+
     /**
      * Get unique name oft the plugin
      *
@@ -87,4 +145,24 @@ public class PluginMeta {
     public String[] getDepends() {
         return depends;
     }
+
+    /**
+     * Check if the plugin is registered without loading it.
+     * A lazy plugin is activated on the first {@link de.labystudio.pluginloader.PluginLoader#getPlugin(String)} call
+     * or when a dependent plugin is activated.
+     *
+     * @return True if the plugin is activated on first use
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Get the amount of threads of the plugin executor
+     *
+     * @return Amount of threads or zero to use the default of the plugin loader
+     */
+    public int getThreads() {
+        return threads;
+    }
 }
@@ -0,0 +1,27 @@
+package de.labystudio.pluginloader.plugin.meta;
+
+import java.io.IOException;
+
+/**
+ * Thrown if a plugin meta file is malformed
+ *
+ * @author LabyStudio
+ */
+public class PluginMetaException extends IOException {
+
+    /**
+     * Serialization version of the exception
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Create plugin meta exception
+     *
+     * @param fileName Name of the file that contains the malformed plugin meta
+     * @param message  Description of the problem including the json position
+     * @param cause    Cause of the exception or null
+     */
+    public PluginMetaException(String fileName, String message, Throwable cause) {
+        super("Invalid plugin meta in " + fileName + ": " + message, cause);
+    }
+}
@@ -0,0 +1,197 @@
+package de.labystudio.pluginloader.plugin.meta;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming decoder for the plugin meta json.
+ * The json is decoded directly from the input stream without building an intermediate string.
+ *
+ * @author LabyStudio
+ */
+public class PluginMetaReader {
+
+    /**
+     * Shared empty array for empty json arrays
+     */
+    private static final String[] EMPTY = new String[0];
+
+    private PluginMetaReader() {
+    }
+
+    /**
+     * Decode the plugin meta from the given input stream.
+     * The input stream is closed afterwards.
+     *
+     * @param inputStream Input stream of the plugin meta json
+     * @param fileName    Name of the file for error messages
+     * @return Decoded plugin meta
+     * @throws PluginMetaException If the json is malformed or the name or main class is missing
+     * @throws IOException         Exception while reading the input stream
+     */
+    public static PluginMeta read(InputStream inputStream, String fileName) throws IOException {
+        // The stream decoder and the json reader buffer the input internally
+        try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            reader.setLenient(true);
+            return readMeta(reader, fileName);
+        } catch (PluginMetaException e) {
+            throw e;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // Gson already includes the json position in the message
+            throw new PluginMetaException(fileName, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decode the plugin meta object
+     *
+     * @param reader   Json reader
+     * @param fileName Name of the file for error messages
+     * @return Decoded plugin meta
+     * @throws IOException Exception while reading the json
+     */
+    private static PluginMeta readMeta(JsonReader reader, String fileName) throws IOException {
+        String name = null;
+        String main = null;
+        String[] authors = null;
+        String description = null;
+        String[] depends = null;
+        boolean lazy = false;
+        int threads = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = readString(reader);
+                    break;
+                case "main":
+                    main = readString(reader);
+                    break;
+                case "authors":
+                    authors = readStringArray(reader);
+                    break;
+                case "description":
+                    description = readString(reader);
+                    break;
+                case "depends":
+                    depends = readStringArray(reader);
+                    break;
+                case "lazy":
+                    lazy = readBoolean(reader);
+                    break;
+                case "threads":
+                    threads = readInt(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (name == null || name.isEmpty()) {
+            throw new PluginMetaException(fileName, "Missing plugin name" + location(reader), null);
+        }
+        if (main == null || main.isEmpty()) {
+            throw new PluginMetaException(fileName, "Missing main class of plugin " + name + location(reader), null);
+        }
+
+        if (threads < 0) {
+            throw new PluginMetaException(fileName, "Invalid thread count " + threads + " of plugin " + name + location(reader), null);
+        }
+
+        return new PluginMeta(name, main, authors, description, depends, lazy, threads);
+    }
+
+    /**
+     * Read a nullable string value
+     *
+     * @param reader Json reader
+     * @return String value or null
+     * @throws IOException Exception while reading the json
+     */
+    private static String readString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Read a nullable boolean value
+     *
+     * @param reader Json reader
+     * @return Boolean value or false if null
+     * @throws IOException Exception while reading the json
+     */
+    private static boolean readBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        return reader.nextBoolean();
+    }
+
+    /**
+     * Read a nullable int value
+     *
+     * @param reader Json reader
+     * @return Int value or zero if null
+     * @throws IOException Exception while reading the json
+     */
+    private static int readInt(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+        return reader.nextInt();
+    }
+
+    /**
+     * Read a nullable array of strings
+     *
+     * @param reader Json reader
+     * @return String array or null
+     * @throws IOException Exception while reading the json
+     */
+    private static String[] readStringArray(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        reader.beginArray();
+        if (!reader.hasNext()) {
+            reader.endArray();
+            return EMPTY;
+        }
+
+        List<String> values = new ArrayList<>(4);
+        while (reader.hasNext()) {
+            values.add(reader.nextString());
+        }
+        reader.endArray();
+        return values.toArray(EMPTY);
+    }
+
+    /**
+     * Get the current json position of the reader
+     *
+     * @param reader Json reader
+     * @return Position description like " at line 1 column 20 path $.name"
+     */
+    private static String location(JsonReader reader) {
+        String description = reader.toString();
+        int index = description.indexOf(" at ");
+        return index == -1 ? " at path " + reader.getPath() : description.substring(index);
+    }
+}
@@ -0,0 +1,382 @@
+package de.labystudio.pluginloader.plugin.verification;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import de.labystudio.pluginloader.PluginLoaderLogger;
+import de.labystudio.pluginloader.util.FileDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the SHA-256 digests of jar files.
+ * A jar file with the same size, modification time, file key and change time is not hashed again.
+ * Persisted entries are authenticated with an HMAC, entries that were not written with the same key are discarded.
+ *
+ * @author LabyStudio
+ */
+class DigestCache {
+
+    /**
+     * Gson instance to read and write the cache file
+     */
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Version of the cache file format. Cache files of other versions are rebuilt.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Algorithm of the entry authentication codes
+     */
+    static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * Cache file location or null if the cache is only kept in memory
+     */
+    private final File file;
+
+    /**
+     * Key of the entry authentication codes or null if the cache is only kept in memory
+     */
+    private final SecretKeySpec key;
+
+    /**
+     * Cached digests by the absolute path of the jar file
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * True if the cache changed since it was loaded
+     */
+    private volatile boolean dirty;
+
+    /**
+     * Create an empty digest cache
+     *
+     * @param file Cache file location or null to keep the cache only in memory
+     * @param key  Key of the entry authentication codes or null to keep the cache only in memory
+     */
+    private DigestCache(File file, SecretKeySpec key) {
+        this.file = file;
+        this.key = key;
+    }
+
+    /**
+     * Create an empty digest cache that is only kept in memory
+     *
+     * @return Digest cache
+     */
+    static DigestCache inMemory() {
+        return new DigestCache(null, null);
+    }
+
+    /**
+     * Load the digest cache from the given file.
+     * A missing, outdated or corrupt cache file results in an empty cache that is rebuilt transparently.
+     * Entries with an invalid authentication code are discarded.
+     *
+     * @param file   Cache file location
+     * @param key    Key of the entry authentication codes
+     * @param logger Logger to report a corrupt cache file
+     * @return Loaded digest cache
+     */
+    static DigestCache load(File file, SecretKeySpec key, PluginLoaderLogger logger) {
+        DigestCache cache = new DigestCache(file, key);
+        if (!file.exists()) {
+            return cache;
+        }
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Storage storage = GSON.fromJson(reader, Storage.class);
+            if (storage == null || storage.version != VERSION || storage.entries == null) {
+                cache.dirty = true;
+                return cache;
+            }
+
+            int rejected = 0;
+            for (Entry entry : storage.entries) {
+                if (entry == null || entry.path == null || entry.stamp == null || entry.hash == null || entry.mac == null) {
+                    continue;
+                }
+                if (!MessageDigest.isEqual(entry.mac.getBytes(StandardCharsets.UTF_8),
+                        cache.mac(entry.path, entry.stamp, entry.hash).getBytes(StandardCharsets.UTF_8))) {
+                    rejected++;
+                    continue;
+                }
+                cache.entries.put(entry.path, entry);
+            }
+            if (rejected > 0) {
+                logger.log("Discarding " + rejected + " entries with an invalid authentication code from digest cache " + file.getName());
+                cache.dirty = true;
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.log("Rebuilding corrupt digest cache " + file.getName() + ": " + e.getMessage());
+            cache.entries.clear();
+            cache.dirty = true;
+        }
+        return cache;
+    }
+
+    /**
+     * Get the cached entry of the given jar file if the jar file is unchanged
+     *
+     * @param jarFile Jar file to lookup
+     * @param stamp   Current file stamp of the jar file
+     * @return Cache entry or null if the jar file is not cached or changed
+     */
+    Entry lookup(File jarFile, FileStamp stamp) {
+        Entry entry = this.entries.get(jarFile.getAbsolutePath());
+        return entry != null && stamp.equals(entry.stamp) ? entry : null;
+    }
+
+    /**
+     * Store the digest of the given jar file in the cache
+     *
+     * @param jarFile Jar file
+     * @param stamp   File stamp of the jar file, read before it was hashed
+     * @param hash    SHA-256 digest of the jar file
+     * @param signed  True if all entries of the jar file have a valid signature. Only kept in memory.
+     */
+    void update(File jarFile, FileStamp stamp, String hash, boolean signed) {
+        String path = jarFile.getAbsolutePath();
+        this.entries.put(path, new Entry(path, stamp, hash, this.key == null ? null : mac(path, stamp, hash), signed));
+        this.dirty = true;
+    }
+
+    /**
+     * Create the authentication code of a cache entry
+     *
+     * @param path  Absolute path of the jar file
+     * @param stamp File stamp of the jar file
+     * @param hash  SHA-256 digest of the jar file
+     * @return Lowercase hex encoded authentication code
+     */
+    private String mac(String path, FileStamp stamp, String hash) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(this.key);
+            String content = path + '\n' + stamp.size + '\n' + stamp.lastModified + '\n' + stamp.fileKey
+                    + '\n' + stamp.changeTime + '\n' + hash;
+            return FileDigest.toHex(mac.doFinal(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            // Every Java platform is required to support HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write the cache to the cache file if it changed.
+     * Entries of deleted jar files are dropped and the file is replaced atomically.
+     * Nothing is written if the cache is only kept in memory.
+     *
+     * @throws IOException Exception while writing the cache file
+     */
+    synchronized void save() throws IOException {
+        if (this.file == null) {
+            return;
+        }
+        if (this.entries.keySet().removeIf(path -> !new File(path).exists())) {
+            this.dirty = true;
+        }
+        if (!this.dirty) {
+            return;
+        }
+        this.dirty = false;
+
+        Storage storage = new Storage();
+        storage.version = VERSION;
+        storage.entries = new ArrayList<>(this.entries.values());
+
+        Path target = this.file.toPath().toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.createDirectories(target.getParent());
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            GSON.toJson(storage, writer);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Cached digest of a jar file
+     */
+    static class Entry {
+
+        /**
+         * Absolute path of the jar file
+         */
+        private final String path;
+
+        /**
+         * File stamp of the jar file when it was hashed
+         */
+        private final FileStamp stamp;
+
+        /**
+         * SHA-256 digest of the jar file
+         */
+        private final String hash;
+
+        /**
+         * Authentication code of the path, the file stamp and the digest. Null if the cache is only kept in memory.
+         */
+        private final String mac;
+
+        /**
+         * True if all entries of the jar file have a valid signature.
+         * Never persisted, the signature of each jar file is verified again after a restart.
+         */
+        private final transient boolean signed;
+
+        /**
+         * Create cache entry
+         *
+         * @param path   Absolute path of the jar file
+         * @param stamp  File stamp of the jar file when it was hashed
+         * @param hash   SHA-256 digest of the jar file
+         * @param mac    Authentication code of the entry or null
+         * @param signed True if all entries of the jar file have a valid signature
+         */
+        private Entry(String path, FileStamp stamp, String hash, String mac, boolean signed) {
+            this.path = path;
+            this.stamp = stamp;
+            this.hash = hash;
+            this.mac = mac;
+            this.signed = signed;
+        }
+
+        /**
+         * Get the SHA-256 digest of the jar file
+         *
+         * @return Lowercase hex encoded digest
+         */
+        String getHash() {
+            return hash;
+        }
+
+        /**
+         * Check if the signature of the jar file was verified
+         *
+         * @return True if all entries of the jar file have a valid signature
+         */
+        boolean isSigned() {
+            return signed;
+        }
+    }
+
+    /**
+     * Attributes that change whenever a jar file is modified or replaced
+     */
+    static class FileStamp {
+
+        /**
+         * Size of the file in bytes
+         */
+        private final long size;
+
+        /**
+         * Last modification time in nanoseconds
+         */
+        private final long lastModified;
+
+        /**
+         * Identity of the file on the file system, the device and inode on unix. Null if not supported.
+         */
+        private final String fileKey;
+
+        /**
+         * Last change time of the inode in nanoseconds, also updated if the modification time is reset. -1 if not supported.
+         */
+        private final long changeTime;
+
+        /**
+         * Create file stamp
+         *
+         * @param size         Size of the file in bytes
+         * @param lastModified Last modification time in nanoseconds
+         * @param fileKey      Identity of the file on the file system or null
+         * @param changeTime   Last change time of the inode in nanoseconds or -1
+         */
+        private FileStamp(long size, long lastModified, String fileKey, long changeTime) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+            this.changeTime = changeTime;
+        }
+
+        /**
+         * Read the current file stamp of the given file
+         *
+         * @param file File to read the attributes of
+         * @return Current file stamp
+         * @throws IOException Exception while reading the attributes
+         */
+        static FileStamp read(File file) throws IOException {
+            Path path = file.toPath();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            Object fileKey = attributes.fileKey();
+
+            long changeTime = -1;
+            try {
+                changeTime = ((FileTime) Files.getAttribute(path, "unix:ctime")).to(TimeUnit.NANOSECONDS);
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                // Only available on unix file systems
+            }
+
+            return new FileStamp(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                    fileKey == null ? null : fileKey.toString(), changeTime);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp stamp = (FileStamp) object;
+            return this.size == stamp.size
+                    && this.lastModified == stamp.lastModified
+                    && this.changeTime == stamp.changeTime
+                    && Objects.equals(this.fileKey, stamp.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.size, this.lastModified, this.fileKey, this.changeTime);
+        }
+    }
+
+    /**
+     * Serialized form of the cache file
+     */
+    private static class Storage {
+        private int version;
+        private List<Entry> entries;
+    }
+}
@@ -0,0 +1,464 @@
+package de.labystudio.pluginloader.plugin.verification;
+
+import de.labystudio.pluginloader.PluginLoaderLogger;
+import de.labystudio.pluginloader.util.FileDigest;
+import de.labystudio.pluginloader.util.NamedThreadFactory;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.CodeSigner;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+
+/**
+ * Verifies plugin jar files before they are opened.
+ * The SHA-256 digest of each jar file must be in the trusted digests and the jar file must be signed if required.
+ * Digests and verified signatures are cached in memory, and the digests can be persisted with {@link #setCache(File, byte[])}
+ * so unchanged jar files are not hashed again on the next boot.
+ *
+ * @author LabyStudio
+ */
+public class JarVerifier {
+
+    /**
+     * Format of a lowercase hex encoded SHA-256 digest
+     */
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * Minimum length of the digest cache key in bytes
+     */
+    private static final int MIN_CACHE_KEY_LENGTH = 16;
+
+    /**
+     * Logger to report a corrupt cache file
+     */
+    private final PluginLoaderLogger logger;
+
+    /**
+     * Verified jar files by their absolute path, to detect jar files that are replaced before they are opened
+     */
+    private final Map<String, VerifiedJar> verifiedJars = new ConcurrentHashMap<>();
+
+    /**
+     * Digest cache file location or null if the digests are only cached in memory
+     */
+    private File cacheFile;
+
+    /**
+     * Key to authenticate the entries of the digest cache file or null if the digests are only cached in memory
+     */
+    private SecretKeySpec cacheKey;
+
+    /**
+     * Allowed SHA-256 digests of the jar files. Null if all digests are allowed.
+     */
+    private volatile Set<String> trustedDigests;
+
+    /**
+     * Reject jar files that contain unsigned entries or entries with an invalid signature
+     */
+    private volatile boolean signatureRequired;
+
+    /**
+     * Cached digests of the jar files. Loaded on first use.
+     */
+    private volatile DigestCache cache;
+
+    /**
+     * Create jar verifier. Nothing is verified until trusted digests are set or signatures are required.
+     * The digests are only cached in memory until a cache file is set.
+     *
+     * @param logger Logger to report a corrupt cache file
+     */
+    public JarVerifier(PluginLoaderLogger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Persist the digests of the jar files in the given cache file, so unchanged jar files are not hashed again on the next boot.
+     * The entries are authenticated with an HMAC of the given key, entries that were not written with the same key are discarded.
+     * Anyone who can write the cache file and read the key can bypass the trusted digests,
+     * so keep both outside of the plugin directory. Verified signatures are never persisted.
+     *
+     * @param cacheFile Digest cache file location or null to cache the digests only in memory
+     * @param key       Secret key of at least 16 bytes to authenticate the cache entries, required if a cache file is set
+     * @throws IllegalArgumentException If a cache file is set without a key or the key is too short
+     */
+    public synchronized void setCache(File cacheFile, byte[] key) {
+        if (cacheFile != null && (key == null || key.length < MIN_CACHE_KEY_LENGTH)) {
+            throw new IllegalArgumentException("The digest cache key must have at least " + MIN_CACHE_KEY_LENGTH + " bytes");
+        }
+
+        this.cacheFile = cacheFile;
+        this.cacheKey = cacheFile == null ? null : new SecretKeySpec(key, DigestCache.MAC_ALGORITHM);
+        this.cache = null;
+    }
+
+    /**
+     * Check if the jar files have to be verified
+     *
+     * @return True if trusted digests are set or signatures are required
+     */
+    public boolean isEnabled() {
+        return this.trustedDigests != null || this.signatureRequired;
+    }
+
+    /**
+     * Verify the given jar files in parallel
+     *
+     * @param jarFiles Jar files to verify
+     * @param threads  Maximum amount of threads to hash the jar files
+     * @param failures Map to add the exception of each rejected jar file to
+     * @return SHA-256 digest of each verified jar file in the order of the given jar files
+     */
+    public Map<File, String> verify(List<File> jarFiles, int threads, Map<File, PluginVerificationException> failures) {
+        Map<File, String> digests = new LinkedHashMap<>();
+        if (jarFiles.size() == 1 || threads <= 1) {
+            for (File jarFile : jarFiles) {
+                try {
+                    digests.put(jarFile, verify(jarFile));
+                } catch (PluginVerificationException e) {
+                    failures.put(jarFile, e);
+                }
+            }
+            return digests;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, jarFiles.size()),
+                new NamedThreadFactory("PluginLoader-Verification"));
+        try {
+            // Submit all jar files
+            List<Future<String>> futures = new ArrayList<>(jarFiles.size());
+            for (File jarFile : jarFiles) {
+                futures.add(executor.submit(() -> verify(jarFile)));
+            }
+
+            // Collect the results in submission order
+            for (int i = 0; i < jarFiles.size(); i++) {
+                File jarFile = jarFiles.get(i);
+                try {
+                    digests.put(jarFile, futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    failures.put(jarFile, cause instanceof PluginVerificationException
+                            ? (PluginVerificationException) cause
+                            : new PluginVerificationException(jarFile.getName(), String.valueOf(cause), cause));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return digests;
+    }
+
+    /**
+     * Verify the given jar file against the trusted digests and its signature if required
+     *
+     * @param jarFile Jar file to verify
+     * @return SHA-256 digest of the jar file
+     * @throws PluginVerificationException If the jar file is not trusted, not signed or can't be read
+     */
+    public String verify(File jarFile) throws PluginVerificationException {
+        String fileName = jarFile.getName();
+        try {
+            DigestCache cache = getCache();
+            DigestCache.FileStamp stamp = DigestCache.FileStamp.read(jarFile);
+            DigestCache.Entry entry = cache.lookup(jarFile, stamp);
+
+            String digest;
+            boolean signed;
+            if (entry == null) {
+                digest = FileDigest.sha256Mapped(jarFile);
+                signed = false;
+                cache.update(jarFile, stamp, digest, false);
+            } else {
+                digest = entry.getHash();
+                signed = entry.isSigned();
+            }
+
+            Set<String> trustedDigests = this.trustedDigests;
+            if (trustedDigests != null && !trustedDigests.contains(digest)) {
+                throw new PluginVerificationException(fileName, "SHA-256 digest " + digest + " is not trusted", null);
+            }
+
+            // The signature of an unchanged jar file only has to be verified once per run
+            if (this.signatureRequired && !signed) {
+                verifySignature(jarFile);
+                cache.update(jarFile, stamp, digest, true);
+            }
+
+            this.verifiedJars.put(jarFile.getAbsolutePath(), new VerifiedJar(stamp, digest));
+            return digest;
+        } catch (PluginVerificationException e) {
+            throw e;
+        } catch (SecurityException e) {
+            throw new PluginVerificationException(fileName, "Invalid signature: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new PluginVerificationException(fileName, "Could not read jar file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Check that the given jar file was verified and did not change since then.
+     * Call it after the jar file was opened, so a jar file that was replaced after the verification is not used.
+     *
+     * @param jarFile Verified jar file
+     * @return SHA-256 digest of the verified jar file
+     * @throws PluginVerificationException If the jar file was not verified or changed after the verification
+     */
+    public String checkUnchanged(File jarFile) throws PluginVerificationException {
+        VerifiedJar verifiedJar = this.verifiedJars.get(jarFile.getAbsolutePath());
+        if (verifiedJar == null) {
+            throw new PluginVerificationException(jarFile.getName(), "Jar file was not verified", null);
+        }
+
+        DigestCache.FileStamp stamp;
+        try {
+            stamp = DigestCache.FileStamp.read(jarFile);
+        } catch (IOException e) {
+            throw new PluginVerificationException(jarFile.getName(), "Could not read jar file: " + e.getMessage(), e);
+        }
+        if (!verifiedJar.stamp.equals(stamp)) {
+            throw new PluginVerificationException(jarFile.getName(), "Jar file changed after it was verified", null);
+        }
+        return verifiedJar.digest;
+    }
+
+    /**
+     * Get the SHA-256 digest of the given jar file without verifying it.
+     * Unchanged jar files are resolved from the cache.
+     *
+     * @param jarFile Jar file to hash
+     * @return Lowercase hex encoded SHA-256 digest
+     * @throws IOException Exception while hashing the jar file
+     */
+    public String digest(File jarFile) throws IOException {
+        DigestCache cache = getCache();
+        DigestCache.FileStamp stamp = DigestCache.FileStamp.read(jarFile);
+        DigestCache.Entry entry = cache.lookup(jarFile, stamp);
+        if (entry != null) {
+            return entry.getHash();
+        }
+
+        String digest = FileDigest.sha256Mapped(jarFile);
+        cache.update(jarFile, stamp, digest, false);
+        return digest;
+    }
+
+    /**
+     * Check that every entry of the given jar file is signed and matches its signature
+     *
+     * @param jarFile Jar file to verify
+     * @throws IOException       If an entry is not signed or the jar file can't be read
+     * @throws SecurityException If the content of an entry does not match its signature
+     */
+    private static void verifySignature(File jarFile) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (JarFile jar = new JarFile(jarFile, true)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || isSignatureEntry(entry.getName())) {
+                    continue;
+                }
+
+                // The signers are only known after the entry was read completely
+                try (InputStream inputStream = jar.getInputStream(entry)) {
+                    while (inputStream.read(buffer) != -1) {
+                        // Reading verifies the digest of the entry
+                    }
+                }
+
+                CodeSigner[] signers = entry.getCodeSigners();
+                if (signers == null || signers.length == 0) {
+                    throw new PluginVerificationException(jarFile.getName(), "Entry " + entry.getName() + " is not signed", null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the given entry is part of the signature itself and therefore not signed
+     *
+     * @param name Name of the jar entry
+     * @return True for the manifest and the signature files
+     */
+    private static boolean isSignatureEntry(String name) {
+        String upperName = name.toUpperCase(Locale.ROOT);
+        if (!upperName.startsWith("META-INF/")) {
+            return false;
+        }
+        if (upperName.equals(JarFile.MANIFEST_NAME)) {
+            return true;
+        }
+
+        String fileName = upperName.substring("META-INF/".length());
+        return fileName.indexOf('/') == -1 && (fileName.startsWith("SIG-") || fileName.endsWith(".SF")
+                || fileName.endsWith(".RSA") || fileName.endsWith(".DSA") || fileName.endsWith(".EC"));
+    }
+
+    /**
+     * Write the digest cache to the cache file if it changed
+     *
+     * @throws IOException Exception while writing the cache file
+     */
+    public void saveCache() throws IOException {
+        DigestCache cache = this.cache;
+        if (cache != null) {
+            cache.save();
+        }
+    }
+
+    /**
+     * Get the digest cache and load it on first use
+     *
+     * @return Digest cache
+     */
+    private DigestCache getCache() {
+        DigestCache cache = this.cache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = this.cache;
+                if (cache == null) {
+                    cache = this.cache = this.cacheFile == null
+                            ? DigestCache.inMemory()
+                            : DigestCache.load(this.cacheFile, this.cacheKey, this.logger);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Set the allowed SHA-256 digests of the jar files
+     *
+     * @param trustedDigests Hex encoded SHA-256 digests or null to allow all digests
+     * @throws IllegalArgumentException If a digest is not a hex encoded SHA-256 digest
+     */
+    public void setTrustedDigests(Collection<String> trustedDigests) {
+        if (trustedDigests == null) {
+            this.trustedDigests = null;
+            return;
+        }
+
+        Set<String> digests = new LinkedHashSet<>();
+        for (String trustedDigest : trustedDigests) {
+            String digest = trustedDigest.trim().toLowerCase(Locale.ROOT);
+            if (!SHA256_HEX.matcher(digest).matches()) {
+                throw new IllegalArgumentException("Invalid SHA-256 digest: " + trustedDigest);
+            }
+            digests.add(digest);
+        }
+        this.trustedDigests = Collections.unmodifiableSet(digests);
+    }
+
+    /**
+     * Get the allowed SHA-256 digests of the jar files
+     *
+     * @return Lowercase hex encoded digests or null if all digests are allowed
+     */
+    public Set<String> getTrustedDigests() {
+        return trustedDigests;
+    }
+
+    /**
+     * Reject jar files that contain unsigned entries or entries with an invalid signature.
+     * Use it together with the trusted digests, a valid signature alone does not tell who signed the jar file.
+     *
+     * @param signatureRequired True to verify the signature of each jar file
+     */
+    public void setSignatureRequired(boolean signatureRequired) {
+        this.signatureRequired = signatureRequired;
+    }
+
+    /**
+     * Check if jar files have to be signed
+     *
+     * @return True if the signature of each jar file is verified
+     */
+    public boolean isSignatureRequired() {
+        return signatureRequired;
+    }
+
+    /**
+     * Read a trust list file with one SHA-256 digest per line.
+     * Empty lines and lines starting with <code>#</code> are ignored, and text after the digest is ignored as well,
+     * so the output of <code>sha256sum *.jar</code> can be used as trust list.
+     *
+     * @param file Trust list file
+     * @return Lowercase hex encoded digests
+     * @throws IOException Exception while reading the file or if a line contains no valid digest
+     */
+    public static Set<String> readTrustList(File file) throws IOException {
+        Set<String> digests = new LinkedHashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String digest = line.split("\\s+", 2)[0].toLowerCase(Locale.ROOT);
+                if (!SHA256_HEX.matcher(digest).matches()) {
+                    throw new IOException("Invalid SHA-256 digest in " + file.getName() + " at line " + lineNumber);
+                }
+                digests.add(digest);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * File stamp and digest of a jar file when it was verified
+     */
+    private static class VerifiedJar {
+
+        /**
+         * File stamp of the jar file when it was verified
+         */
+        private final DigestCache.FileStamp stamp;
+
+        /**
+         * SHA-256 digest of the verified jar file
+         */
+        private final String digest;
+
+        /**
+         * Create verified jar
+         *
+         * @param stamp  File stamp of the jar file when it was verified
+         * @param digest SHA-256 digest of the verified jar file
+         */
+        private VerifiedJar(DigestCache.FileStamp stamp, String digest) {
+            this.stamp = stamp;
+            this.digest = digest;
+        }
+    }
+}
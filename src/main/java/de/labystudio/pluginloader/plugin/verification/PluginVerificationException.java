@@ -0,0 +1,27 @@
+package de.labystudio.pluginloader.plugin.verification;
+
+import java.io.IOException;
+
+/**
+ * Thrown if a plugin jar file is not trusted or its signature is invalid
+ *
+ * @author LabyStudio
+ */
+public class PluginVerificationException extends IOException {
+
+    /**
+     * Serialization version of the exception
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Create plugin verification exception
+     *
+     * @param fileName Name of the rejected jar file
+     * @param message  Reason why the jar file was rejected
+     * @param cause    Cause of the exception or null
+     */
+    public PluginVerificationException(String fileName, String message, Throwable cause) {
+        super("Rejected plugin jar " + fileName + ": " + message, cause);
+    }
+}
@@ -0,0 +1,295 @@
+package de.labystudio.pluginloader.scheduler;
+
+import de.labystudio.pluginloader.util.NamedThreadFactory;
+import de.labystudio.pluginloader.util.VirtualThreads;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor and scheduler that the plugin loader owns for a plugin.
+ * Both are shut down when the plugin is unloaded, so tasks of unloaded plugins don't keep running.
+ * Counts the tasks of the plugin and the CPU time they used.
+ *
+ * @author LabyStudio
+ */
+public class PluginScheduler {
+
+    /**
+     * Time in seconds until idle threads are stopped
+     */
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Time in milliseconds for interrupted tasks to return after the shutdown timeout
+     */
+    private static final long INTERRUPT_GRACE_MILLIS = 100;
+
+    /**
+     * Name of the plugin
+     */
+    private final String pluginName;
+
+    /**
+     * Amount of platform threads of the executor or zero if it uses virtual threads
+     */
+    private final int threads;
+
+    /**
+     * Task counters and CPU time of both executors
+     */
+    private final TaskAccounting accounting = new TaskAccounting();
+
+    /**
+     * Executor for the tasks of the plugin
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Scheduler for delayed and periodic tasks of the plugin
+     */
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Create the executor and scheduler of a plugin. Threads are only started once tasks are submitted.
+     *
+     * @param pluginName Name of the plugin
+     * @param threads    Amount of platform threads of the executor
+     * @param virtual    Run each task of the executor on a virtual thread if the runtime supports them
+     */
+    public PluginScheduler(String pluginName, int threads, boolean virtual) {
+        this.pluginName = pluginName;
+
+        String threadName = "Plugin-" + pluginName;
+        if (virtual && VirtualThreads.isAvailable()) {
+            this.threads = 0;
+            this.executor = new AccountingThreadPoolExecutor(0, Integer.MAX_VALUE, new SynchronousQueue<>(),
+                    VirtualThreads.newThreadFactory(threadName));
+        } else {
+            this.threads = threads;
+            this.executor = new AccountingThreadPoolExecutor(threads, threads, new LinkedBlockingQueue<>(),
+                    new NamedThreadFactory(threadName));
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        this.scheduler = new AccountingScheduledThreadPoolExecutor(new NamedThreadFactory(threadName + "-Scheduler"));
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduler.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.scheduler.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        this.scheduler.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Stop accepting tasks and wait for the running tasks to finish.
+     * Delayed and periodic tasks that did not start yet are discarded.
+     * Tasks that are still running after the timeout are interrupted.
+     *
+     * @param timeoutMillis Maximum time in milliseconds to wait or zero to wait endlessly
+     * @return True if all tasks finished, false if tasks are still running after the interrupt
+     */
+    public boolean shutdown(long timeoutMillis) {
+        this.scheduler.shutdown();
+        this.executor.shutdown();
+
+        try {
+            long timeoutNanos = timeoutMillis == 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            if (awaitTermination(timeoutNanos)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.scheduler.shutdownNow();
+        this.executor.shutdownNow();
+
+        // Give the interrupted tasks a moment to return
+        try {
+            return awaitTermination(TimeUnit.MILLISECONDS.toNanos(INTERRUPT_GRACE_MILLIS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return this.scheduler.isTerminated() && this.executor.isTerminated();
+        }
+    }
+
+    /**
+     * Wait for both executors to terminate
+     *
+     * @param timeoutNanos Maximum time in nanoseconds to wait for both
+     * @return True if both terminated in time
+     * @throws InterruptedException If the current thread was interrupted while waiting
+     */
+    private boolean awaitTermination(long timeoutNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        return this.scheduler.awaitTermination(timeoutNanos, TimeUnit.NANOSECONDS)
+                && this.executor.awaitTermination(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the executor for the tasks of the plugin.
+     * Rejects tasks after the plugin was unloaded.
+     *
+     * @return Plugin executor
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Get the scheduler for delayed and periodic tasks of the plugin.
+     * It runs on a single thread, so long running tasks should be handed to the {@link #getExecutor() executor}.
+     * Rejects tasks after the plugin was unloaded.
+     *
+     * @return Plugin scheduler
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Check if the plugin scheduler was shut down
+     *
+     * @return True if no tasks are accepted anymore
+     */
+    public boolean isShutdown() {
+        return this.executor.isShutdown();
+    }
+
+    /**
+     * Get the name of the plugin
+     *
+     * @return Plugin name
+     */
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    /**
+     * Get the amount of platform threads of the executor
+     *
+     * @return Amount of threads or zero if the executor uses virtual threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Get the amount of tasks that are running right now
+     *
+     * @return Running tasks
+     */
+    public long getActiveTasks() {
+        return this.accounting.getActiveTasks();
+    }
+
+    /**
+     * Get the amount of tasks that wait for a free thread of the executor.
+     * Delayed tasks of the scheduler are not included.
+     *
+     * @return Queued tasks
+     */
+    public long getQueuedTasks() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * Get the amount of finished task runs including failed ones.
+     * Each run of a periodic task is counted.
+     *
+     * @return Finished task runs
+     */
+    public long getCompletedTasks() {
+        return this.accounting.getCompletedTasks();
+    }
+
+    /**
+     * Get the amount of task runs that threw an exception
+     *
+     * @return Failed task runs
+     */
+    public long getFailedTasks() {
+        return this.accounting.getFailedTasks();
+    }
+
+    /**
+     * Get the CPU time of all finished task runs and the CPU time that running tasks used so far.
+     * Tasks on virtual threads are not included because their CPU time can't be measured.
+     *
+     * @param unit Unit of the returned time
+     * @return CPU time of the plugin tasks
+     */
+    public long getCpuTime(TimeUnit unit) {
+        return unit.convert(this.accounting.getCpuNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the wall time of all finished task runs, including the time they were blocked
+     *
+     * @param unit Unit of the returned time
+     * @return Wall time of the plugin tasks
+     */
+    public long getBusyTime(TimeUnit unit) {
+        return unit.convert(this.accounting.getBusyNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Thread pool executor that reports each task to the task accounting
+     */
+    private class AccountingThreadPoolExecutor extends ThreadPoolExecutor {
+
+        /**
+         * Create accounting thread pool executor
+         *
+         * @param corePoolSize    Amount of threads to keep
+         * @param maximumPoolSize Maximum amount of threads
+         * @param queue           Queue of the waiting tasks
+         * @param threadFactory   Factory of the worker threads
+         */
+        private AccountingThreadPoolExecutor(int corePoolSize, int maximumPoolSize, BlockingQueue<Runnable> queue, ThreadFactory threadFactory) {
+            super(corePoolSize, maximumPoolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, threadFactory);
+        }
+
+        @Override
+        protected void beforeExecute(Thread thread, Runnable runnable) {
+            PluginScheduler.this.accounting.beforeExecute(thread);
+        }
+
+        @Override
+        protected void afterExecute(Runnable runnable, Throwable throwable) {
+            PluginScheduler.this.accounting.afterExecute(runnable, throwable);
+        }
+    }
+
+    /**
+     * Single threaded scheduler that reports each task run to the task accounting
+     */
+    private class AccountingScheduledThreadPoolExecutor extends ScheduledThreadPoolExecutor {
+
+        /**
+         * Create accounting scheduler
+         *
+         * @param threadFactory Factory of the scheduler thread
+         */
+        private AccountingScheduledThreadPoolExecutor(ThreadFactory threadFactory) {
+            super(1, threadFactory);
+        }
+
+        @Override
+        protected void beforeExecute(Thread thread, Runnable runnable) {
+            PluginScheduler.this.accounting.beforeExecute(thread);
+        }
+
+        @Override
+        protected void afterExecute(Runnable runnable, Throwable throwable) {
+            PluginScheduler.this.accounting.afterExecute(runnable, throwable);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package de.labystudio.pluginloader.scheduler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the tasks of a plugin and the CPU and wall time they used.
+ * Called by the executors before and after each task on the thread that runs it.
+ *
+ * @author LabyStudio
+ */
+class TaskAccounting {
+
+    /**
+     * Thread bean to measure the CPU time of the current thread
+     */
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    /**
+     * True if the runtime can measure the CPU time of the current thread
+     */
+    private static final boolean CPU_TIME_SUPPORTED = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+
+    /**
+     * True if the runtime can measure the CPU time of other threads
+     */
+    private static final boolean THREAD_CPU_TIME_SUPPORTED = THREAD_MX_BEAN.isThreadCpuTimeSupported();
+
+    /**
+     * Wall and CPU time in nanoseconds at the start of the current task of each thread
+     */
+    private final ThreadLocal<long[]> startTimes = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * CPU time in nanoseconds at the start of the current task of each busy worker thread.
+     * Sampled to include the CPU time of tasks that are still running, for example a task that never returns.
+     */
+    private final Map<Thread, Long> runningTasks = new ConcurrentHashMap<>();
+
+    /**
+     * Amount of tasks that are running right now
+     */
+    private final LongAdder activeTasks = new LongAdder();
+
+    /**
+     * Amount of finished task runs including failed ones
+     */
+    private final LongAdder completedTasks = new LongAdder();
+
+    /**
+     * Amount of task runs that threw an exception
+     */
+    private final LongAdder failedTasks = new LongAdder();
+
+    /**
+     * CPU time in nanoseconds of all task runs on threads that support CPU time measurement
+     */
+    private final LongAdder cpuNanos = new LongAdder();
+
+    /**
+     * Wall time in nanoseconds of all task runs
+     */
+    private final LongAdder busyNanos = new LongAdder();
+
+    /**
+     * Called on the worker thread before a task runs
+     *
+     * @param thread The worker thread
+     */
+    void beforeExecute(Thread thread) {
+        long[] startTimes = this.startTimes.get();
+        startTimes[0] = System.nanoTime();
+        startTimes[1] = currentThreadCpuTime();
+        if (startTimes[1] >= 0 && THREAD_CPU_TIME_SUPPORTED) {
+            this.runningTasks.put(thread, startTimes[1]);
+        }
+        this.activeTasks.increment();
+    }
+
+    /**
+     * Called on the worker thread after a task ran
+     *
+     * @param runnable  The task
+     * @param throwable Exception that stopped the task or null
+     */
+    void afterExecute(Runnable runnable, Throwable throwable) {
+        long[] startTimes = this.startTimes.get();
+        this.busyNanos.add(System.nanoTime() - startTimes[0]);
+
+        // Removed before the time is added, so a concurrent sample never counts the task twice
+        this.runningTasks.remove(Thread.currentThread());
+
+        // Virtual threads and disabled measurement report no CPU time
+        long cpuTime = currentThreadCpuTime();
+        if (startTimes[1] >= 0 && cpuTime >= 0) {
+            this.cpuNanos.add(cpuTime - startTimes[1]);
+        }
+
+        this.activeTasks.decrement();
+        this.completedTasks.increment();
+        if (throwable != null || hasFailed(runnable)) {
+            this.failedTasks.increment();
+        }
+    }
+
+    /**
+     * Check if the given task is a completed future that failed with an exception.
+     * Submitted tasks catch their exceptions, so they never reach the executor.
+     *
+     * @param runnable The task
+     * @return True if the future completed exceptionally
+     */
+    private static boolean hasFailed(Runnable runnable) {
+        if (!(runnable instanceof Future) || !((Future<?>) runnable).isDone()) {
+            return false;
+        }
+
+        try {
+            ((Future<?>) runnable).get();
+            return false;
+        } catch (CancellationException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Get the CPU time of the current thread
+     *
+     * @return CPU time in nanoseconds or -1 if it can't be measured on this thread
+     */
+    private static long currentThreadCpuTime() {
+        if (!CPU_TIME_SUPPORTED) {
+            return -1;
+        }
+        try {
+            return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get the amount of tasks that are running right now
+     *
+     * @return Running tasks
+     */
+    long getActiveTasks() {
+        return this.activeTasks.sum();
+    }
+
+    /**
+     * Get the amount of finished task runs including failed ones
+     *
+     * @return Finished task runs
+     */
+    long getCompletedTasks() {
+        return this.completedTasks.sum();
+    }
+
+    /**
+     * Get the amount of task runs that threw an exception
+     *
+     * @return Failed task runs
+     */
+    long getFailedTasks() {
+        return this.failedTasks.sum();
+    }
+
+    /**
+     * Get the CPU time of all finished and running task runs on threads that support CPU time measurement
+     *
+     * @return CPU time in nanoseconds
+     */
+    long getCpuNanos() {
+        long cpuNanos = this.cpuNanos.sum();
+        for (Map.Entry<Thread, Long> runningTask : this.runningTasks.entrySet()) {
+            long cpuTime = threadCpuTime(runningTask.getKey());
+            if (cpuTime >= runningTask.getValue()) {
+                cpuNanos += cpuTime - runningTask.getValue();
+            }
+        }
+        return cpuNanos;
+    }
+
+    /**
+     * Get the CPU time of the given thread
+     *
+     * @param thread Worker thread
+     * @return CPU time in nanoseconds or -1 if the thread is not alive or can't be measured
+     */
+    private static long threadCpuTime(Thread thread) {
+        try {
+            return THREAD_MX_BEAN.getThreadCpuTime(thread.getId());
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get the wall time of all task runs
+     *
+     * @return Wall time in nanoseconds
+     */
+    long getBusyNanos() {
+        return this.busyNanos.sum();
+    }
+}
@@ -0,0 +1,109 @@
+package de.labystudio.pluginloader.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cached handle of a service type.
+ * The handle stays valid forever and always reflects the current registrations of the type.
+ * Reading it never blocks.
+ *
+ * @param <S> Service type
+ * @author LabyStudio
+ */
+public class ServiceHandle<S> {
+
+    /**
+     * Service type of this handle
+     */
+    private final Class<S> type;
+
+    /**
+     * Current registrations of the type.
+     * Replaced as a whole whenever the registrations change, so readers never see a mix of two updates.
+     */
+    private volatile Snapshot<S> snapshot = new Snapshot<>(Collections.emptyList());
+
+    /**
+     * Create service handle
+     *
+     * @param type Service type
+     */
+    ServiceHandle(Class<S> type) {
+        this.type = type;
+    }
+
+    /**
+     * Publish the current registrations of the type
+     *
+     * @param implementations Implementations ordered by their priority, highest first
+     */
+    void update(List<S> implementations) {
+        this.snapshot = new Snapshot<>(new ArrayList<>(implementations));
+    }
+
+    /**
+     * Get the implementation with the highest priority
+     *
+     * @return Service implementation or null if no plugin provides the service
+     */
+    public S get() {
+        return this.snapshot.implementation;
+    }
+
+    /**
+     * Get all implementations ordered by their priority, highest first
+     *
+     * @return Read-only snapshot of all implementations
+     */
+    public List<S> getAll() {
+        return this.snapshot.implementations;
+    }
+
+    /**
+     * Check if any plugin provides the service
+     *
+     * @return True if there is at least one implementation
+     */
+    public boolean isAvailable() {
+        return this.snapshot.implementation != null;
+    }
+
+    /**
+     * Get the service type of this handle
+     *
+     * @return Service type
+     */
+    public Class<S> getType() {
+        return type;
+    }
+
+    /**
+     * Immutable registrations of a service type at one point in time
+     *
+     * @param <S> Service type
+     */
+    private static class Snapshot<S> {
+
+        /**
+         * Implementations of all registrations ordered by their priority, highest first
+         */
+        private final List<S> implementations;
+
+        /**
+         * Implementation with the highest priority or null if there is none
+         */
+        private final S implementation;
+
+        /**
+         * Create snapshot
+         *
+         * @param implementations Implementations ordered by their priority, highest first. Not modified afterwards.
+         */
+        private Snapshot(List<S> implementations) {
+            this.implementations = Collections.unmodifiableList(implementations);
+            this.implementation = implementations.isEmpty() ? null : implementations.get(0);
+        }
+    }
+}
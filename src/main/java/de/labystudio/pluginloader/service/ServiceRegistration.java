@@ -0,0 +1,113 @@
+package de.labystudio.pluginloader.service;
+
+import de.labystudio.pluginloader.plugin.Plugin;
+
+/**
+ * Registered implementation of a service type
+ *
+ * @param <S> Service type
+ * @author LabyStudio
+ */
+public class ServiceRegistration<S> {
+
+    /**
+     * Registry that contains this registration
+     */
+    private final ServiceRegistry registry;
+
+    /**
+     * Plugin that provides the implementation
+     */
+    private final Plugin provider;
+
+    /**
+     * Service type
+     */
+    private final Class<S> type;
+
+    /**
+     * Service implementation
+     */
+    private final S implementation;
+
+    /**
+     * Priority of the implementation. Higher priorities are preferred.
+     */
+    private final int priority;
+
+    /**
+     * Registration order to keep implementations with the same priority in order
+     */
+    private final long sequence;
+
+    /**
+     * Create service registration
+     *
+     * @param registry       Registry that contains this registration
+     * @param provider       Plugin that provides the implementation
+     * @param type           Service type
+     * @param implementation Service implementation
+     * @param priority       Priority of the implementation
+     * @param sequence       Registration order
+     */
+    ServiceRegistration(ServiceRegistry registry, Plugin provider, Class<S> type, S implementation, int priority, long sequence) {
+        this.registry = registry;
+        this.provider = provider;
+        this.type = type;
+        this.implementation = implementation;
+        this.priority = priority;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Remove this registration from the registry
+     */
+    public void unregister() {
+        this.registry.unregister(this);
+    }
+
+    /**
+     * Get the plugin that provides the implementation
+     *
+     * @return Provider plugin
+     */
+    public Plugin getProvider() {
+        return provider;
+    }
+
+    /**
+     * Get the service type
+     *
+     * @return Service type
+     */
+    public Class<S> getType() {
+        return type;
+    }
+
+    /**
+     * Get the service implementation
+     *
+     * @return Service implementation
+     */
+    public S getImplementation() {
+        return implementation;
+    }
+
+    /**
+     * Get the priority of the implementation. Higher priorities are preferred.
+     *
+     * @return Priority
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Get the registration order
+     *
+     * @return Sequence number of the registration
+     */
+    long getSequence() {
+        return sequence;
+    }
+}
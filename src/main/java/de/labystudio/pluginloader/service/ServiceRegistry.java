@@ -0,0 +1,187 @@
+package de.labystudio.pluginloader.service;
+
+import de.labystudio.pluginloader.plugin.Plugin;
+import de.labystudio.pluginloader.plugin.PluginClassLoader;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of services that plugins provide to each other by an interface type.
+ * Consumers keep a {@link ServiceHandle} and read it without locking, the handle follows all changes of the registrations.
+ * All services of a plugin are unregistered automatically when the plugin is unloaded.
+ *
+ * @author LabyStudio
+ */
+public class ServiceRegistry {
+
+    /**
+     * Order of the registrations, highest priority first and then in registration order
+     */
+    private static final Comparator<ServiceRegistration<?>> ORDER = Comparator
+            .comparingInt((ServiceRegistration<?> registration) -> registration.getPriority()).reversed()
+            .thenComparingLong(ServiceRegistration::getSequence);
+
+    /**
+     * All registrations by their service type. Guarded by the registry.
+     */
+    private final Map<Class<?>, List<ServiceRegistration<?>>> registrations = new HashMap<>();
+
+    /**
+     * Cached handles of all requested service types
+     */
+    private final Map<Class<?>, ServiceHandle<?>> handles = new ConcurrentHashMap<>();
+
+    /**
+     * Amount of registrations so far. Guarded by the registry.
+     */
+    private long sequence;
+
+    /**
+     * Register a service implementation of the given plugin
+     *
+     * @param provider       Plugin that provides the implementation
+     * @param type           Service type, usually an interface of a shared api plugin
+     * @param implementation Service implementation
+     * @param priority       Priority of the implementation. Higher priorities are preferred.
+     * @param <S>            Service type
+     * @return Registration to unregister the implementation
+     */
+    public synchronized <S> ServiceRegistration<S> register(Plugin provider, Class<S> type, S implementation, int priority) {
+        if (!type.isInstance(implementation)) {
+            throw new IllegalArgumentException(implementation.getClass().getName() + " does not implement " + type.getName());
+        }
+
+        ServiceRegistration<S> registration = new ServiceRegistration<>(this, provider, type, implementation, priority, this.sequence++);
+        List<ServiceRegistration<?>> registrations = this.registrations.computeIfAbsent(type, key -> new ArrayList<>());
+        registrations.add(registration);
+        registrations.sort(ORDER);
+
+        publish(type);
+        return registration;
+    }
+
+    /**
+     * Remove the given registration
+     *
+     * @param registration Registration to remove
+     */
+    synchronized void unregister(ServiceRegistration<?> registration) {
+        List<ServiceRegistration<?>> registrations = this.registrations.get(registration.getType());
+        if (registrations != null && registrations.remove(registration)) {
+            if (registrations.isEmpty()) {
+                this.registrations.remove(registration.getType());
+            }
+            publish(registration.getType());
+        }
+    }
+
+    /**
+     * Remove all registrations of the given plugin and all handles of service types that the plugin defines.
+     * Called by the plugin loader when the plugin is unloaded.
+     *
+     * @param provider Unloaded plugin
+     */
+    public synchronized void unregisterAll(Plugin provider) {
+        List<Class<?>> changedTypes = new ArrayList<>();
+        for (Map.Entry<Class<?>, List<ServiceRegistration<?>>> entry : this.registrations.entrySet()) {
+            if (entry.getValue().removeIf(registration -> registration.getProvider() == provider)) {
+                changedTypes.add(entry.getKey());
+            }
+        }
+        this.registrations.values().removeIf(List::isEmpty);
+
+        for (Class<?> type : changedTypes) {
+            publish(type);
+        }
+
+        // Service types of the plugin itself would keep its class loader alive
+        ClassLoader classLoader = provider.getClass().getClassLoader();
+        if (classLoader instanceof PluginClassLoader) {
+            this.registrations.keySet().removeIf(type -> type.getClassLoader() == classLoader);
+            this.handles.values().removeIf(handle -> {
+                if (handle.getType().getClassLoader() != classLoader) {
+                    return false;
+                }
+
+                // Consumers that still hold the handle see the service as gone
+                handle.update(new ArrayList<>());
+                return true;
+            });
+        }
+    }
+
+    /**
+     * Get the cached handle of the given service type
+     *
+     * @param type Service type
+     * @param <S>  Service type
+     * @return Handle that always contains the current implementations of the type
+     */
+    @SuppressWarnings("unchecked")
+    public <S> ServiceHandle<S> getService(Class<S> type) {
+        ServiceHandle<S> handle = (ServiceHandle<S>) this.handles.get(type);
+        if (handle != null) {
+            return handle;
+        }
+
+        synchronized (this) {
+            handle = (ServiceHandle<S>) this.handles.get(type);
+            if (handle == null) {
+                handle = new ServiceHandle<>(type);
+                handle.update(implementationsOf(type));
+                this.handles.put(type, handle);
+            }
+            return handle;
+        }
+    }
+
+    /**
+     * Get the implementation of the given service type with the highest priority
+     *
+     * @param type Service type
+     * @param <S>  Service type
+     * @return Service implementation or null if no plugin provides the service
+     */
+    public <S> S get(Class<S> type) {
+        return getService(type).get();
+    }
+
+    /**
+     * Publish the current registrations of the given type to its handle. Requires the registry lock.
+     *
+     * @param type Changed service type
+     * @param <S>  Service type
+     */
+    @SuppressWarnings("unchecked")
+    private <S> void publish(Class<S> type) {
+        ServiceHandle<S> handle = (ServiceHandle<S>) this.handles.get(type);
+        if (handle != null) {
+            handle.update(implementationsOf(type));
+        }
+    }
+
+    /**
+     * Get the current implementations of the given type. Requires the registry lock.
+     *
+     * @param type Service type
+     * @param <S>  Service type
+     * @return Implementations ordered by their priority, highest first
+     */
+    private <S> List<S> implementationsOf(Class<S> type) {
+        List<ServiceRegistration<?>> registrations = this.registrations.get(type);
+        if (registrations == null) {
+            return new ArrayList<>();
+        }
+
+        List<S> implementations = new ArrayList<>(registrations.size());
+        for (ServiceRegistration<?> registration : registrations) {
+            implementations.add(type.cast(registration.getImplementation()));
+        }
+        return implementations;
+    }
+}
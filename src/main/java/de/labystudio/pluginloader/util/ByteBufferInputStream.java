@@ -0,0 +1,57 @@
+package de.labystudio.pluginloader.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream that reads the remaining bytes of a byte buffer without copying them first
+ *
+ * @author LabyStudio
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    /**
+     * Buffer to read from. Its position is advanced while reading.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Create input stream
+     *
+     * @param buffer Buffer to read from. Use a duplicate if the buffer is shared.
+     */
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (!this.buffer.hasRemaining()) {
+            return -1;
+        }
+
+        int read = Math.min(length, this.buffer.remaining());
+        this.buffer.get(bytes, offset, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long amount) {
+        int skipped = (int) Math.max(0, Math.min(amount, this.buffer.remaining()));
+        this.buffer.position(this.buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return this.buffer.remaining();
+    }
+}
@@ -0,0 +1,142 @@
+package de.labystudio.pluginloader.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a directory for created, modified and deleted files.
+ * Rapid changes are collected until the directory was quiet for the debounce time and reported as one batch.
+ *
+ * @author LabyStudio
+ */
+public class DirectoryWatcher implements Closeable {
+
+    /**
+     * Watched directory
+     */
+    private final Path directory;
+
+    /**
+     * Time without changes in milliseconds before the collected changes are reported
+     */
+    private final long debounceMillis;
+
+    /**
+     * Callback for each batch of changed paths.
+     * The batch contains the directory itself if events were lost and the whole directory has to be rescanned.
+     */
+    private final Consumer<Set<Path>> listener;
+
+    /**
+     * Watch service of the directory
+     */
+    private final WatchService watchService;
+
+    /**
+     * Thread that waits for changes
+     */
+    private final Thread thread;
+
+    /**
+     * Create a directory watcher. Call {@link #start()} to start watching.
+     *
+     * @param directory      Directory to watch
+     * @param debounceMillis Time without changes in milliseconds before the collected changes are reported
+     * @param threadName     Name of the watcher thread
+     * @param listener       Callback for each batch of changed paths
+     * @throws IOException Exception while registering the watch service
+     */
+    public DirectoryWatcher(Path directory, long debounceMillis, String threadName, Consumer<Set<Path>> listener) throws IOException {
+        this.directory = directory;
+        this.debounceMillis = debounceMillis;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.directory.register(this.watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start watching the directory
+     */
+    public void start() {
+        this.thread.start();
+    }
+
+    /**
+     * Wait for changes and report them in debounced batches
+     */
+    private void run() {
+        Set<Path> changes = new LinkedHashSet<>();
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // Wait endlessly if nothing is pending, otherwise only until the debounce time is over
+                WatchKey key = changes.isEmpty()
+                        ? this.watchService.take()
+                        : this.watchService.poll(this.debounceMillis, TimeUnit.MILLISECONDS);
+
+                if (key == null) {
+                    Set<Path> batch = changes;
+                    changes = new LinkedHashSet<>();
+                    notifyListener(batch);
+                    continue;
+                }
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        changes.add(this.directory);
+                    } else {
+                        changes.add(this.directory.resolve((Path) event.context()));
+                    }
+                }
+
+                if (!key.reset()) {
+                    // The directory is not accessible anymore
+                    break;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher was closed
+        }
+    }
+
+    /**
+     * Report a batch of changes to the listener
+     *
+     * @param batch Changed paths
+     */
+    private void notifyListener(Set<Path> batch) {
+        try {
+            this.listener.accept(batch);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stop watching the directory
+     *
+     * @throws IOException Exception while closing the watch service
+     */
+    @Override
+    public void close() throws IOException {
+        this.thread.interrupt();
+        this.watchService.close();
+    }
+}
@@ -0,0 +1,99 @@
+package de.labystudio.pluginloader.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes content hashes of files
+ *
+ * @author LabyStudio
+ */
+public class FileDigest {
+
+    /**
+     * Hex characters to encode the digest
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Maximum size of each mapped region of a file
+     */
+    private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+
+    private FileDigest() {
+    }
+
+    /**
+     * Compute the SHA-256 digest of the given file
+     *
+     * @param file File to hash
+     * @return Lowercase hex encoded SHA-256 digest
+     * @throws IOException Exception while reading the file
+     */
+    public static String sha256(File file) throws IOException {
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Compute the SHA-256 digest of the given file by mapping it into memory.
+     * The content is hashed straight from the page cache without copying it through a stream buffer.
+     *
+     * @param file File to hash
+     * @return Lowercase hex encoded SHA-256 digest
+     * @throws IOException Exception while mapping the file
+     */
+    public static String sha256Mapped(File file) throws IOException {
+        MessageDigest digest = newSha256();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+                digest.update(region);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Create a new SHA-256 message digest
+     *
+     * @return SHA-256 message digest
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this runtime", e);
+        }
+    }
+
+    /**
+     * Encode the given bytes as lowercase hex string
+     *
+     * @param bytes Bytes to encode
+     * @return Lowercase hex string
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
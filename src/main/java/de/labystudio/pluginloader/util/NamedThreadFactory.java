@@ -0,0 +1,38 @@
+package de.labystudio.pluginloader.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factory that creates named daemon threads for the plugin loader
+ *
+ * @author LabyStudio
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+    /**
+     * Prefix of all thread names
+     */
+    private final String prefix;
+
+    /**
+     * Counter of the created threads
+     */
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Create a named thread factory
+     *
+     * @param prefix Prefix of all thread names
+     */
+    public NamedThreadFactory(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, this.prefix + "-" + this.counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,117 @@
+package de.labystudio.pluginloader.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates executors backed by virtual threads if the runtime supports them
+ *
+ * @author LabyStudio
+ */
+public class VirtualThreads {
+
+    /**
+     * Factory method of the virtual thread executor. Null if the runtime has no virtual threads.
+     */
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    /**
+     * Thread.ofVirtual() to create virtual thread factories. Null if the runtime has no virtual threads.
+     */
+    private static final Method OF_VIRTUAL = findOfVirtual();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Check if the runtime supports virtual threads
+     *
+     * @return True if virtual threads are available
+     */
+    public static boolean isAvailable() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for each task.
+     * Falls back to a cached pool of named daemon threads if the runtime has no virtual threads.
+     *
+     * @param name Name prefix of the platform threads for the fallback pool
+     * @return Executor for short-lived and blocking tasks
+     */
+    public static ExecutorService newExecutor(String name) {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+            } catch (Exception e) {
+                // Fall through to platform threads
+            }
+        }
+        return Executors.newCachedThreadPool(new NamedThreadFactory(name));
+    }
+
+    /**
+     * Create an executor with a fixed amount of platform threads or a virtual thread per task
+     *
+     * @param name    Name prefix of the platform threads
+     * @param threads Amount of platform threads
+     * @param virtual Use virtual threads if the runtime supports them
+     * @return Executor for the tasks
+     */
+    public static ExecutorService newExecutor(String name, int threads, boolean virtual) {
+        if (virtual && isAvailable()) {
+            return newExecutor(name);
+        }
+        ThreadFactory threadFactory = new NamedThreadFactory(name);
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    /**
+     * Create a thread factory for virtual threads.
+     * Falls back to named daemon platform threads if the runtime has no virtual threads.
+     *
+     * @param name Name prefix of the threads
+     * @return Thread factory
+     */
+    public static ThreadFactory newThreadFactory(String name) {
+        if (OF_VIRTUAL != null) {
+            try {
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                Object builder = OF_VIRTUAL.invoke(null);
+                builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (Exception e) {
+                // Fall through to platform threads
+            }
+        }
+        return new NamedThreadFactory(name);
+    }
+
+    /**
+     * Lookup Thread.ofVirtual() without requiring a recent runtime at compile time
+     *
+     * @return Factory method or null if not available
+     */
+    private static Method findOfVirtual() {
+        try {
+            return Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lookup Executors.newVirtualThreadPerTaskExecutor() without requiring a recent runtime at compile time
+     *
+     * @return Factory method or null if not available
+     */
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package de.labystudio.pluginloader.plugin;
+
+import de.labystudio.pluginloader.plugin.meta.PluginMeta;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Defines the classes of one plugin jar from many threads at the same time
+ *
+ * @author LabyStudio
+ */
+public class PluginClassLoaderConcurrencyTest {
+
+    /**
+     * Amount of classes in the jar file and amount of loading threads
+     */
+    private static final int CLASSES = 32;
+
+    /**
+     * Package of the generated classes, not visible to the parent class loader
+     */
+    private static final String PACKAGE_NAME = "concurrent.test";
+
+    /**
+     * Maximum time in seconds until the loading threads are considered deadlocked
+     */
+    private static final long TIMEOUT_SECONDS = 30;
+
+    /**
+     * Maximum time in seconds that a class definition waits for the definitions of all other classes
+     */
+    private static final long RENDEZVOUS_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Temporary directory of the generated jar file
+     */
+    private Path root;
+
+    /**
+     * Generated plugin jar file
+     */
+    private File jarFile;
+
+    @Before
+    public void createJarFile() throws IOException {
+        this.root = Files.createTempDirectory("pluginloader-test");
+        Path sources = Files.createDirectories(this.root.resolve("src").resolve(PACKAGE_NAME.replace('.', '/')));
+        Path classes = Files.createDirectories(this.root.resolve("classes"));
+
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-d");
+        arguments.add(classes.toString());
+        for (int i = 0; i < CLASSES; i++) {
+            Path sourceFile = sources.resolve("C" + i + ".java");
+            Files.write(sourceFile, ("package " + PACKAGE_NAME + ";\n"
+                    + "public class C" + i + " {\n"
+                    + "    public static int value() {\n"
+                    + "        return " + i + ";\n"
+                    + "    }\n"
+                    + "}\n").getBytes(StandardCharsets.UTF_8));
+            arguments.add(sourceFile.toString());
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("The test requires a JDK to compile the plugin classes", compiler);
+        assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[0])));
+
+        this.jarFile = this.root.resolve("plugin.jar").toFile();
+        try (JarOutputStream outputStream = new JarOutputStream(Files.newOutputStream(this.jarFile.toPath()))) {
+            String packagePath = PACKAGE_NAME.replace('.', '/');
+            try (Stream<Path> stream = Files.list(classes.resolve(packagePath))) {
+                for (Path classFile : (Iterable<Path>) stream::iterator) {
+                    outputStream.putNextEntry(new JarEntry(packagePath + "/" + classFile.getFileName()));
+                    outputStream.write(Files.readAllBytes(classFile));
+                    outputStream.closeEntry();
+                }
+            }
+        }
+    }
+
+    @After
+    public void deleteJarFile() throws IOException {
+        try (Stream<Path> stream = Files.walk(this.root)) {
+            for (Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void defineClassesConcurrently() throws Exception {
+        PluginMeta meta = new PluginMeta("ConcurrencyTest", PACKAGE_NAME + ".C0");
+        RendezvousClassLoader classLoader = new RendezvousClassLoader(getClass().getClassLoader(), meta,
+                this.root.toFile(), this.jarFile, new CyclicBarrier(CLASSES));
+        assertTrue("The plugin class loader must be registered as parallel capable", classLoader.isParallelCapable());
+
+        ExecutorService executor = Executors.newFixedThreadPool(CLASSES);
+        try {
+            // Each thread starts with a different class and then loads all others, so every class is requested concurrently
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Class<?>[]>> futures = new ArrayList<>(CLASSES);
+            for (int thread = 0; thread < CLASSES; thread++) {
+                int offset = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+
+                    Class<?>[] loaded = new Class<?>[CLASSES];
+                    for (int i = 0; i < CLASSES; i++) {
+                        int index = (offset + i) % CLASSES;
+                        loaded[index] = classLoader.loadClass(PACKAGE_NAME + ".C" + index);
+                    }
+                    return loaded;
+                }));
+            }
+            start.countDown();
+
+            // All classes are defined at the same time, a class loader wide lock shows up as a timeout
+            Class<?>[] expected = futures.get(0).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            for (Future<Class<?>[]> future : futures) {
+                Class<?>[] loaded = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                for (int i = 0; i < CLASSES; i++) {
+                    assertSame(expected[i], loaded[i]);
+                    assertSame(classLoader, loaded[i].getClassLoader());
+                }
+            }
+
+            // Every class was defined exactly once
+            assertEquals(CLASSES, classLoader.getDefinedClasses());
+        } finally {
+            executor.shutdownNow();
+            classLoader.release();
+        }
+    }
+
+    /**
+     * Plugin class loader that only defines a class once all other classes are being defined at the same time
+     */
+    private static class RendezvousClassLoader extends PluginClassLoader {
+
+        static {
+            // Only succeeds if the plugin class loader is registered as parallel capable
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        /**
+         * Barrier that all class definitions wait at
+         */
+        private final CyclicBarrier barrier;
+
+        /**
+         * Create rendezvous class loader
+         *
+         * @param parent        Parent class loader
+         * @param meta          Plugin meta information
+         * @param dataDirectory Data directory of the plugin
+         * @param file          Jar file location
+         * @param barrier       Barrier that all class definitions wait at
+         */
+        private RendezvousClassLoader(ClassLoader parent, PluginMeta meta, File dataDirectory, File file, CyclicBarrier barrier) throws IOException {
+            super(parent, null, null, meta, dataDirectory, file);
+            this.barrier = barrier;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            try {
+                this.barrier.await(RENDEZVOUS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                throw new ClassNotFoundException("Classes are not defined in parallel: " + name, e);
+            }
+            return super.findClass(name);
+        }
+
+        /**
+         * Check if the class loader uses a lock per class name, the same as {@code ClassLoader#isRegisteredAsParallelCapable()} on Java 9 and newer
+         *
+         * @return True if the class loader is registered as parallel capable
+         */
+        private boolean isParallelCapable() {
+            return getClassLoadingLock(PACKAGE_NAME + ".C0") != this;
+        }
+    }
+}
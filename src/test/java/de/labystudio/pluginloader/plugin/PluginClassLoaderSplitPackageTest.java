@@ -0,0 +1,169 @@
+package de.labystudio.pluginloader.plugin;
+
+import de.labystudio.pluginloader.plugin.meta.PluginMeta;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Loads the classes and resources of one package that is split across a plugin and its depending plugins
+ *
+ * @author LabyStudio
+ */
+public class PluginClassLoaderSplitPackageTest {
+
+    /**
+     * Package that every plugin jar contains, not visible to the parent class loader
+     */
+    private static final String PACKAGE_NAME = "split.test";
+
+    /**
+     * Temporary directory of the generated jar files
+     */
+    private Path root;
+
+    /**
+     * Compiled classes of all plugins
+     */
+    private Path classes;
+
+    /**
+     * Class loaders created by the test
+     */
+    private final List<PluginClassLoader> classLoaders = new ArrayList<>();
+
+    @Before
+    public void compileClasses() throws IOException {
+        this.root = Files.createTempDirectory("pluginloader-test");
+        Path sources = Files.createDirectories(this.root.resolve("src").resolve(PACKAGE_NAME.replace('.', '/')));
+        this.classes = Files.createDirectories(this.root.resolve("classes"));
+
+        List<String> arguments = new ArrayList<>(Arrays.asList("-d", this.classes.toString()));
+        for (String className : new String[]{"Api", "Other", "Impl"}) {
+            Path sourceFile = sources.resolve(className + ".java");
+            Files.write(sourceFile, ("package " + PACKAGE_NAME + ";\n"
+                    + "public class " + className + " {\n"
+                    + "}\n").getBytes(StandardCharsets.UTF_8));
+            arguments.add(sourceFile.toString());
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("The test requires a JDK to compile the plugin classes", compiler);
+        assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[0])));
+    }
+
+    @After
+    public void deleteJarFiles() throws IOException {
+        for (PluginClassLoader classLoader : this.classLoaders) {
+            classLoader.release();
+        }
+        try (Stream<Path> stream = Files.walk(this.root)) {
+            for (Path path : (Iterable<Path>) stream.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void loadSplitPackage() throws Exception {
+        // Plugin "plugin" depends on "first" and "second", all three have classes in the same package
+        PluginClassLoader first = createClassLoader("first", Collections.emptyList(), "Api");
+        PluginClassLoader second = createClassLoader("second", Collections.emptyList(), "Other");
+        PluginClassLoader plugin = createClassLoader("plugin", Arrays.asList(first, second), "Impl");
+
+        assertSame(plugin, plugin.loadClass(PACKAGE_NAME + ".Impl").getClassLoader());
+        assertSame(first, plugin.loadClass(PACKAGE_NAME + ".Api").getClassLoader());
+        assertSame(second, plugin.loadClass(PACKAGE_NAME + ".Other").getClassLoader());
+
+        String packagePath = PACKAGE_NAME.replace('.', '/');
+        assertNotNull(plugin.getResource(packagePath + "/Impl.txt"));
+        assertNotNull(plugin.getResource(packagePath + "/Api.txt"));
+        assertNotNull(plugin.getResource(packagePath + "/Other.txt"));
+
+        // The shared resource of every plugin, the own one first
+        List<URL> resources = Collections.list(plugin.getResources(packagePath + "/shared.txt"));
+        assertEquals(3, resources.size());
+        assertEquals("plugin", new String(readAll(resources.get(0)), StandardCharsets.UTF_8));
+        assertEquals("first", new String(readAll(resources.get(1)), StandardCharsets.UTF_8));
+        assertEquals("second", new String(readAll(resources.get(2)), StandardCharsets.UTF_8));
+
+        // The remaining dependency still provides its part of the package
+        plugin.removeDependency(first);
+        assertSame(second, plugin.loadClass(PACKAGE_NAME + ".Other").getClassLoader());
+        assertEquals(2, Collections.list(plugin.getResources(packagePath + "/shared.txt")).size());
+    }
+
+    /**
+     * Create a plugin jar with the given class of the split package and a class loader for it
+     *
+     * @param name         Name of the plugin
+     * @param dependencies Class loaders of the depending plugins
+     * @param className    Simple name of the class in the jar file
+     * @return Class loader of the plugin
+     * @throws IOException Exception while writing the jar file
+     */
+    private PluginClassLoader createClassLoader(String name, List<PluginClassLoader> dependencies, String className) throws IOException {
+        String packagePath = PACKAGE_NAME.replace('.', '/');
+        File jarFile = this.root.resolve(name + ".jar").toFile();
+        try (JarOutputStream outputStream = new JarOutputStream(Files.newOutputStream(jarFile.toPath()))) {
+            outputStream.putNextEntry(new JarEntry(packagePath + "/" + className + ".class"));
+            outputStream.write(Files.readAllBytes(this.classes.resolve(packagePath).resolve(className + ".class")));
+            outputStream.closeEntry();
+
+            outputStream.putNextEntry(new JarEntry(packagePath + "/" + className + ".txt"));
+            outputStream.closeEntry();
+
+            outputStream.putNextEntry(new JarEntry(packagePath + "/shared.txt"));
+            outputStream.write(name.getBytes(StandardCharsets.UTF_8));
+            outputStream.closeEntry();
+        }
+
+        PluginMeta meta = new PluginMeta(name, PACKAGE_NAME + "." + className);
+        PluginClassLoader classLoader = new PluginClassLoader(getClass().getClassLoader(), dependencies, null, null, meta,
+                this.root.toFile(), jarFile);
+        this.classLoaders.add(classLoader);
+        return classLoader;
+    }
+
+    /**
+     * Read the content of a resource
+     *
+     * @param url Resource location
+     * @return Content of the resource
+     * @throws IOException Exception while reading the resource
+     */
+    private static byte[] readAll(URL url) throws IOException {
+        try (InputStream inputStream = url.openStream()) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+}